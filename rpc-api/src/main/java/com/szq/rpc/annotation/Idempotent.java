@@ -0,0 +1,34 @@
+package com.szq.rpc.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * @author Ashur
+ * @description 标识幂等的服务接口方法，注解放在rpc-api的接口方法上，服务端无需任何改动
+ * 客户端对这类调用启用重试和对冲：失败时换一个实例重试；响应迟迟未到时向另一个实例发出一份相同的请求，先返回的响应生效。
+ * 重试和对冲都消耗客户端的重试预算，预算用完时退化为普通调用，不会引发重试风暴。
+ * 只能用于多执行一次也没有副作用的方法(查询、按主键覆盖写等)
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Idempotent {
+
+    /**
+     * 失败后最多重试的次数
+     */
+    public int retries() default 2;
+
+    /**
+     * 是否发出对冲请求
+     */
+    public boolean hedge() default true;
+
+    /**
+     * 发出对冲请求前等待的时间(毫秒)，小于等于0表示按该方法最近响应延迟的p95自动确定
+     */
+    public long hedgeDelayMillis() default 0;
+
+}
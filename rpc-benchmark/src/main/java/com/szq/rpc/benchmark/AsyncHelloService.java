@@ -0,0 +1,16 @@
+package com.szq.rpc.benchmark;
+
+import com.szq.rpc.annotation.AsyncMirror;
+import com.szq.rpc.api.HelloObject;
+import com.szq.rpc.api.HelloService;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * @author Ashur
+ * @description HelloService的客户端异步镜像接口，服务端仍按HelloService处理
+ */
+@AsyncMirror(HelloService.class)
+public interface AsyncHelloService {
+    CompletableFuture<String> hello(HelloObject object);
+}
@@ -0,0 +1,46 @@
+package com.szq.rpc.benchmark;
+
+import com.szq.rpc.api.HelloObject;
+import com.szq.rpc.api.HelloService;
+import com.szq.rpc.entity.RpcRequest;
+import com.szq.rpc.entity.RpcResponse;
+import com.szq.rpc.enumertaion.SerializerCode;
+import com.szq.rpc.serializer.CommonSerializer;
+import com.szq.rpc.util.MethodIdUtil;
+import com.szq.rpc.util.RequestIdGenerator;
+
+import java.util.Arrays;
+
+/**
+ * @author Ashur
+ * @description 基准测试使用的请求/响应样本，payloadSize为消息体中字符串的长度
+ */
+public final class BenchmarkPayloads {
+
+    private BenchmarkPayloads(){
+    }
+
+    public static String message(int payloadSize){
+        char[] chars = new char[payloadSize];
+        Arrays.fill(chars, 'a');
+        return new String(chars);
+    }
+
+    public static RpcRequest request(int payloadSize){
+        return new RpcRequest(RequestIdGenerator.nextId(), HelloService.class.getCanonicalName(), "hello",
+                MethodIdUtil.methodId("hello", new Class<?>[]{HelloObject.class}), new Object[]{new HelloObject(12, message(payloadSize))}, new Class<?>[]{HelloObject.class}, false);
+    }
+
+    public static RpcResponse<String> response(int payloadSize){
+        return RpcResponse.success(message(payloadSize), RequestIdGenerator.nextId());
+    }
+
+    /**
+     * @description 根据SerializerCode的枚举名获取序列化器，便于用@Param列举
+     * @param name KRYO/JSON/HESSIAN/PROTOBUFF
+     * @return [com.szq.rpc.serializer.CommonSerializer]
+     */
+    public static CommonSerializer serializer(String name){
+        return CommonSerializer.getByCode(SerializerCode.valueOf(name).getCode());
+    }
+}
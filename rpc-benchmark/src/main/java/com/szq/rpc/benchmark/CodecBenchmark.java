@@ -0,0 +1,112 @@
+package com.szq.rpc.benchmark;
+
+import com.szq.rpc.codec.CommonDecoder;
+import com.szq.rpc.codec.CommonEncoder;
+import com.szq.rpc.codec.ProtocolConstants;
+import com.szq.rpc.codec.RpcFrameDecoder;
+import com.szq.rpc.compress.Compressor;
+import com.szq.rpc.entity.RpcRequest;
+import com.szq.rpc.entity.RpcResponse;
+import com.szq.rpc.enumertaion.CompressorCode;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Ashur
+ * @description CommonEncoder/RpcFrameDecoder + CommonDecoder的编解码吞吐，使用EmbeddedChannel驱动完整的Netty管道
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Thread)
+public class CodecBenchmark {
+
+    @Param({"KRYO", "JSON", "HESSIAN", "PROTOBUFF"})
+    private String serializerName;
+
+    @Param({"64", "1024", "16384"})
+    private int payloadSize;
+
+    /**
+     * 消息体压缩算法，CompressorCode的枚举名，例如 -p compression=NONE,GZIP,DEFLATE,SNAPPY,LZ4
+     */
+    @Param({"NONE"})
+    private String compression;
+
+    private EmbeddedChannel encodeChannel;
+    private EmbeddedChannel decodeChannel;
+    private RpcRequest request;
+    private RpcResponse<String> response;
+    /**
+     * 预先编码好的帧，每次解码时复用其内容
+     */
+    private ByteBuf encodedRequest;
+    private ByteBuf encodedResponse;
+
+    @Setup
+    public void setup(){
+        Compressor compressor = Compressor.getByCode(CompressorCode.valueOf(compression).getCode());
+        encodeChannel = new EmbeddedChannel(new CommonEncoder(BenchmarkPayloads.serializer(serializerName),
+                compressor, ProtocolConstants.DEFAULT_COMPRESSION_THRESHOLD));
+        decodeChannel = new EmbeddedChannel(new RpcFrameDecoder(), new CommonDecoder());
+        request = BenchmarkPayloads.request(payloadSize);
+        response = BenchmarkPayloads.response(payloadSize);
+        encodedRequest = copyToPooled(encode(request));
+        encodedResponse = copyToPooled(encode(response));
+    }
+
+    @TearDown
+    public void tearDown(){
+        encodedRequest.release();
+        encodedResponse.release();
+        encodeChannel.finishAndReleaseAll();
+        decodeChannel.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public int encodeRequest(){
+        return releaseOutbound(encode(request));
+    }
+
+    @Benchmark
+    public int encodeResponse(){
+        return releaseOutbound(encode(response));
+    }
+
+    @Benchmark
+    public Object decodeRequest(){
+        decodeChannel.writeInbound(encodedRequest.retainedDuplicate());
+        return decodeChannel.readInbound();
+    }
+
+    @Benchmark
+    public Object decodeResponse(){
+        decodeChannel.writeInbound(encodedResponse.retainedDuplicate());
+        return decodeChannel.readInbound();
+    }
+
+    private ByteBuf encode(Object msg){
+        encodeChannel.writeOutbound(msg);
+        return encodeChannel.readOutbound();
+    }
+
+    private static int releaseOutbound(ByteBuf buf){
+        int length = buf.readableBytes();
+        ReferenceCountUtil.release(buf);
+        return length;
+    }
+
+    private static ByteBuf copyToPooled(ByteBuf buf){
+        ByteBuf copy = PooledByteBufAllocator.DEFAULT.directBuffer(buf.readableBytes());
+        copy.writeBytes(buf);
+        buf.release();
+        return copy;
+    }
+}
@@ -0,0 +1,15 @@
+package com.szq.rpc.benchmark;
+
+import com.szq.rpc.api.HelloObject;
+import com.szq.rpc.api.HelloService;
+
+/**
+ * @author Ashur
+ * @description 原样返回消息内容的服务实现，使响应大小与请求大小一致
+ */
+public class EchoHelloService implements HelloService {
+    @Override
+    public String hello(HelloObject object) {
+        return object.getMessage();
+    }
+}
@@ -0,0 +1,29 @@
+package com.szq.rpc.benchmark;
+
+import com.szq.rpc.registry.ServiceDiscovery;
+import com.szq.rpc.registry.ServiceRegistry;
+
+import java.net.InetSocketAddress;
+
+/**
+ * @author Ashur
+ * @description 不依赖Nacos的本地注册表，所有服务都指向同一个进程内服务端，保证基准测试只测量传输链路
+ */
+public class LocalServiceDiscovery implements ServiceDiscovery, ServiceRegistry {
+
+    private final InetSocketAddress address;
+
+    public LocalServiceDiscovery(InetSocketAddress address){
+        this.address = address;
+    }
+
+    @Override
+    public InetSocketAddress lookupService(String serviceName) {
+        return address;
+    }
+
+    @Override
+    public void register(String serviceName, InetSocketAddress inetSocketAddress) {
+        //服务只保存在服务端本地注册表中，无需注册到注册中心
+    }
+}
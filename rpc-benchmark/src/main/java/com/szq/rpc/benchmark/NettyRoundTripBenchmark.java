@@ -0,0 +1,126 @@
+package com.szq.rpc.benchmark;
+
+import com.szq.rpc.api.HelloObject;
+import com.szq.rpc.annotation.GenerateStubs;
+import com.szq.rpc.api.HelloService;
+import com.szq.rpc.enumertaion.SerializerCode;
+import com.szq.rpc.transport.RpcClientProxy;
+import com.szq.rpc.transport.netty.TransportResources;
+import com.szq.rpc.transport.netty.client.ChannelProvider;
+import com.szq.rpc.transport.netty.client.NettyClient;
+import com.szq.rpc.transport.netty.server.NettyServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Ashur
+ * @description 进程内NettyServer + NettyClient经回环网卡的完整往返调用(代理 -> 编码 -> 网络 -> 服务端处理 -> 解码)
+ * 使用-t参数调整并发调用线程数，例如：java -jar benchmarks.jar NettyRoundTripBenchmark -t 8 -prof gc
+ * 客户端使用编译期生成的HelloService存根，不经过JDK动态代理；fanOut()通过异步镜像接口一次并发发出FAN_OUT个调用
+ */
+@GenerateStubs({HelloService.class, AsyncHelloService.class})
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Benchmark)
+public class NettyRoundTripBenchmark {
+
+    private static final String HOST = "127.0.0.1";
+    private static final int FAN_OUT = 10;
+    /**
+     * 0表示在EventLoop当前一轮任务执行完后flush，不经过定时器
+     */
+    private static final long FLUSH_LATENCY_MICROS = 0;
+
+    @Param({"KRYO", "PROTOBUFF"})
+    private String serializerName;
+
+    @Param({"64", "1024", "16384"})
+    private int payloadSize;
+
+    /**
+     * 写合并批大小，1为关闭，例如 -p flushBatch=1,16 对比开启前后
+     */
+    @Param({"1"})
+    private int flushBatch;
+
+    /**
+     * 请求聚合批大小，1为关闭，例如 -p requestBatch=1,10 对比fanOut在开启前后的表现
+     */
+    @Param({"1"})
+    private int requestBatch;
+
+    private Thread serverThread;
+    private HelloService helloService;
+    private AsyncHelloService asyncHelloService;
+    private HelloObject helloObject;
+
+    @Setup
+    public void setup() throws Exception {
+        int port = freePort();
+        int serializerCode = SerializerCode.valueOf(serializerName).getCode();
+        LocalServiceDiscovery local = new LocalServiceDiscovery(new InetSocketAddress(HOST, port));
+        NettyServer server = new NettyServer(HOST, port, serializerCode, local);
+        server.setWriteCoalescing(flushBatch, FLUSH_LATENCY_MICROS);
+        ChannelProvider.setWriteCoalescing(flushBatch, FLUSH_LATENCY_MICROS);
+        ChannelProvider.setRequestBatching(requestBatch, FLUSH_LATENCY_MICROS);
+        server.publishService(new EchoHelloService(), HelloService.class.getCanonicalName());
+        //start()会阻塞到服务端通道关闭为止，放到单独线程中运行
+        serverThread = new Thread(server::start, "benchmark-netty-server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+        awaitListening(port);
+        RpcClientProxy rpcClientProxy = new RpcClientProxy(new NettyClient(serializerCode, local));
+        helloService = rpcClientProxy.getProxy(HelloService.class);
+        asyncHelloService = rpcClientProxy.getProxy(AsyncHelloService.class);
+        helloObject = new HelloObject(12, BenchmarkPayloads.message(payloadSize));
+    }
+
+    @TearDown
+    public void tearDown(){
+        //中断后NettyServer.start()会退出阻塞并关闭监听Channel
+        serverThread.interrupt();
+        //客户端与服务端共用的EventLoopGroup线程不是守护线程，不关闭的话fork出的JVM无法退出
+        TransportResources.shared().shutdown();
+    }
+
+    @Benchmark
+    public String roundTrip(){
+        return helloService.hello(helloObject);
+    }
+
+    @Benchmark
+    public Object fanOut(){
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[FAN_OUT];
+        for (int i = 0; i < FAN_OUT; i++) {
+            futures[i] = asyncHelloService.hello(helloObject);
+        }
+        return CompletableFuture.allOf(futures).join();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void awaitListening(int port) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (System.currentTimeMillis() < deadline) {
+            try (Socket ignored = new Socket(HOST, port)) {
+                return;
+            } catch (IOException e) {
+                Thread.sleep(50);
+            }
+        }
+        throw new IllegalStateException("基准测试服务端未能在10秒内启动");
+    }
+}
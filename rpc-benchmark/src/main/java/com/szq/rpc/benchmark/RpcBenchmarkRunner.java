@@ -0,0 +1,22 @@
+package com.szq.rpc.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * @author Ashur
+ * @description 在IDE中直接运行全部基准测试，附带GC分析器输出分配速率(gc.alloc.rate.norm即每次操作分配的字节数)
+ * 可通过第一个参数传入正则只运行部分基准，例如：Codec|Serializer
+ */
+public class RpcBenchmarkRunner {
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : "com.szq.rpc.benchmark.*")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
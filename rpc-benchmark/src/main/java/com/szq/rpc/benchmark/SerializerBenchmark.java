@@ -0,0 +1,62 @@
+package com.szq.rpc.benchmark;
+
+import com.szq.rpc.entity.RpcRequest;
+import com.szq.rpc.entity.RpcResponse;
+import com.szq.rpc.serializer.CommonSerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Ashur
+ * @description 各序列化器在不同大小RpcRequest/RpcResponse上的序列化与反序列化开销
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Thread)
+public class SerializerBenchmark {
+
+    @Param({"KRYO", "JSON", "HESSIAN", "PROTOBUFF"})
+    private String serializerName;
+
+    @Param({"64", "1024", "16384"})
+    private int payloadSize;
+
+    private CommonSerializer serializer;
+    private RpcRequest request;
+    private RpcResponse<String> response;
+    private byte[] requestBytes;
+    private byte[] responseBytes;
+
+    @Setup
+    public void setup(){
+        serializer = BenchmarkPayloads.serializer(serializerName);
+        request = BenchmarkPayloads.request(payloadSize);
+        response = BenchmarkPayloads.response(payloadSize);
+        requestBytes = serializer.serialize(request);
+        responseBytes = serializer.serialize(response);
+    }
+
+    @Benchmark
+    public byte[] serializeRequest(){
+        return serializer.serialize(request);
+    }
+
+    @Benchmark
+    public Object deserializeRequest(){
+        return serializer.deserialize(requestBytes, RpcRequest.class);
+    }
+
+    @Benchmark
+    public byte[] serializeResponse(){
+        return serializer.serialize(response);
+    }
+
+    @Benchmark
+    public Object deserializeResponse(){
+        return serializer.deserialize(responseBytes, RpcResponse.class);
+    }
+}
@@ -0,0 +1,27 @@
+package com.szq.rpc.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * @author Ashur
+ * @description 批量请求：一帧中携带发往同一服务端的多个RpcRequest，共用一个帧头和一次系统调用
+ * 每个子请求保留各自的请求号，客户端按子请求号分别完成对应的future
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RpcBatchRequest implements Serializable {
+    /**
+     * 批次号，写在帧头中，仅用于日志和排查
+     */
+    private long requestId;
+    /**
+     * 子请求
+     */
+    private List<RpcRequest> requests;
+}
@@ -0,0 +1,26 @@
+package com.szq.rpc.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * @author Ashur
+ * @description 批量响应：与RpcBatchRequest一一对应，每个子响应带有各自的请求号和状态码
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RpcBatchResponse implements Serializable {
+    /**
+     * 对应的批次号
+     */
+    private long requestId;
+    /**
+     * 子响应，顺序与批量请求中的子请求一致
+     */
+    private List<RpcResponse<?>> responses;
+}
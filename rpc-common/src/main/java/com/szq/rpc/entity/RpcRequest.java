@@ -26,9 +26,9 @@ import java.io.Serializable;
 @AllArgsConstructor
 public class RpcRequest implements Serializable {
     /**
-     * 请求号
+     * 请求号，由RequestIdGenerator单调递增生成，0表示不需要响应的请求(如心跳包)
      */
-    private String requestId;
+    private long requestId;
     /**
      * 待调用接口名称
      */
@@ -37,6 +37,11 @@ public class RpcRequest implements Serializable {
      * 待调用方法名称
      */
     private String methodName;
+    /**
+     * 待调用方法的方法号，由MethodIdUtil根据方法签名计算，0表示未设置，此时服务端按方法名和参数类型查找；
+     * 设置了方法号时，方法名和参数类型可以不发送
+     */
+    private int methodId;
     /**
      * 待调用方法的参数
      */
@@ -26,7 +26,7 @@ public class RpcResponse<T> implements Serializable {
     /**
      * 响应对应的请求号
      */
-    private String requestId;
+    private long requestId;
     /**
      *响应状态码
      */
@@ -45,7 +45,7 @@ public class RpcResponse<T> implements Serializable {
      * @param data
      * @return com.szq.rpc.entity.RpcResponse<T>]
      */
-    public static <T> RpcResponse <T> success(T data, String requestId){
+    public static <T> RpcResponse <T> success(T data, long requestId){
         RpcResponse<T> response = new RpcResponse<>();
         response.setRequestId(requestId);
         response.setStatusCode(ResponseCode.SUCCESS.getCode());
@@ -57,7 +57,7 @@ public class RpcResponse<T> implements Serializable {
  * @param [code]
  * @return [com.szq.rpc.entity.RpcResponse<T>]
 */
-public static <T> RpcResponse<T> fail(ResponseCode code, String requestId) {
+public static <T> RpcResponse<T> fail(ResponseCode code, long requestId) {
         RpcResponse<T> response = new RpcResponse<>();
         response.setRequestId(requestId);
         response.setStatusCode(code.getCode());
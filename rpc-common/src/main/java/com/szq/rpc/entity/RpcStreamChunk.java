@@ -0,0 +1,39 @@
+package com.szq.rpc.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * @author Ashur
+ * @description 流式响应的一个分片：服务端按客户端授予的额度，把流式方法返回的迭代器分批发送给客户端
+ * 同一次调用的所有分片带有相同的请求号，最后一个分片的end为true，失败时同时带有状态码和原因
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RpcStreamChunk implements Serializable {
+    /**
+     * 对应的请求号
+     */
+    private long requestId;
+    /**
+     * 本分片中的元素，可以为空(例如只用于通知结束的分片)
+     */
+    private List<Object> items;
+    /**
+     * 是否为最后一个分片
+     */
+    private Boolean end;
+    /**
+     * 结束时的状态码，成功为200
+     */
+    private Integer statusCode;
+    /**
+     * 失败原因
+     */
+    private String message;
+}
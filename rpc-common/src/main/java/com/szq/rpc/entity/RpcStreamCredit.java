@@ -0,0 +1,30 @@
+package com.szq.rpc.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * @author Ashur
+ * @description 流式调用的流控额度：客户端每消费一部分元素就向服务端补充同样数量的额度，
+ * 服务端已发送未确认的元素数不超过额度，客户端缓存的元素数因此有上限；cancel为true时通知服务端提前结束
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RpcStreamCredit implements Serializable {
+    /**
+     * 对应的请求号
+     */
+    private long requestId;
+    /**
+     * 新增的额度(元素个数)
+     */
+    private int credits;
+    /**
+     * 客户端不再需要后续元素
+     */
+    private Boolean cancel;
+}
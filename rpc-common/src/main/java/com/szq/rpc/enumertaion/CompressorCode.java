@@ -0,0 +1,19 @@
+package com.szq.rpc.enumertaion;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * @author Ashur
+ * @description 帧头标志位中标识消息体的压缩算法，0表示未压缩
+ */
+@AllArgsConstructor
+@Getter
+public enum CompressorCode {
+    NONE(0),
+    GZIP(1),
+    DEFLATE(2),
+    SNAPPY(3),
+    LZ4(4);
+    private final int code;
+}
@@ -0,0 +1,20 @@
+package com.szq.rpc.enumertaion;
+
+/**
+ * @author Ashur
+ * @description 服务端请求的分发方式，即服务方法在哪个线程上执行
+ */
+public enum DispatchMode {
+    /**
+     * 直接在Netty的I/O线程上执行，只适合耗时极短且不阻塞的方法
+     */
+    INLINE,
+    /**
+     * 提交到所有服务共用的业务线程池
+     */
+    SHARED,
+    /**
+     * 提交到该服务独占的业务线程池，慢服务不会占满其他服务的线程
+     */
+    ISOLATED
+}
@@ -21,6 +21,10 @@ import lombok.Getter;
 @AllArgsConstructor
 public enum PackageType {
     REQUEST_PACK(0),
-    RESPONSE_PACK(1);
+    RESPONSE_PACK(1),
+    BATCH_REQUEST_PACK(2),
+    BATCH_RESPONSE_PACK(3),
+    STREAM_CHUNK_PACK(4),
+    STREAM_CREDIT_PACK(5);
     private final int code;
 }
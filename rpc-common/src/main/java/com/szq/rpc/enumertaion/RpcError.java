@@ -24,11 +24,16 @@ public enum RpcError {
     SERVICE_SCAN_PACKAGE_NOT_FOUND("启动类ServiceScan注解缺失"),
     CLIENT_CONNECT_SERVER_FAILURE("客户端连接服务端失败"),
     SERVICE_INVOCATION_FAILURE("服务调用出现失败"),
+    REQUEST_TIMEOUT("请求超时"),
+    CLIENT_OVERLOADED("连接上未完成的请求数已达上限"),
+    SERVICE_CIRCUIT_OPEN("服务的所有提供者均已熔断"),
 //    SERVICE_CAN_NOT_BE_NULL("注册的服务不能为空"),
     SERVICE_NOT_FOUND("找不到对应的服务"),
     SERVICE_NOT_IMPLEMENT_ANY_INTERFACE("注册的服务未实现接口"),
     UNKNOWN_PROTOCOL("不识别的协议包"),
+    UNSUPPORTED_PROTOCOL_VERSION("不支持的协议版本"),
     UNKNOWN_SERIALIZER("不识别的(反)序列化器"),
+    UNKNOWN_COMPRESSOR("不识别的压缩算法"),
     UNKNOWN_PACKAGE_TYPE("不识别的数据包类型"),
     SERIALIZER_NOT_FOUND("找不到序列化器"),
     RESPONSE_NOT_MATCH("响应与请求号不匹配"),
@@ -22,6 +22,12 @@ public class ThreadPoolFactory {
     private static final int KEEP_ALIVE_TIME = 1;
     private static final int BLOCKING_QUEUE_CAPACITY = 100;
     private static final Logger logger = LoggerFactory.getLogger(ThreadPoolFactory.class);
+    /**
+     * 启动参数-Drpc.virtualThreads=true时，线程池改为每个任务一个虚拟线程（需JDK 21及以上），
+     * 大量阻塞调用不再受限于线程池大小；低版本JDK上该参数被忽略
+     */
+    public static final String VIRTUAL_THREADS_PROPERTY = "rpc.virtualThreads";
+    private static final boolean VIRTUAL_THREADS = Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY) && virtualThreadsSupported();
     /**
      * 利用Map管理多个线程池
      */
@@ -62,6 +68,9 @@ public class ThreadPoolFactory {
         });
     }
     public static ExecutorService createThreadPool(String threadNamePrefix, Boolean daemon){
+        if (VIRTUAL_THREADS){
+            return createVirtualThreadExecutor(threadNamePrefix);
+        }
         /**
          * 设置上限为100个线程的阻塞队列
          */
@@ -88,4 +97,39 @@ public class ThreadPoolFactory {
         return Executors.defaultThreadFactory();
     }
 
+    public static boolean isVirtualThreadsEnabled(){
+        return VIRTUAL_THREADS;
+    }
+
+    private static boolean virtualThreadsSupported(){
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            logger.warn("当前JDK不支持虚拟线程，忽略{}参数", VIRTUAL_THREADS_PROPERTY);
+            return false;
+        }
+    }
+
+    /**
+     * @description 创建每个任务一个虚拟线程的ExecutorService
+     * 项目默认以Java 8编译，因此通过反射调用JDK 21的Thread.ofVirtual()和Executors.newThreadPerTaskExecutor()；
+     * 虚拟线程不需要池化，也没有队列上限，阻塞时只挂起虚拟线程而不占用平台线程
+     * @param threadNamePrefix
+     * @return [java.util.concurrent.ExecutorService]
+     */
+    private static ExecutorService createVirtualThreadExecutor(String threadNamePrefix){
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, threadNamePrefix + "-", 0L);
+            ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            //理论上不会发生，启动时已检查过JDK版本
+            throw new IllegalStateException("创建虚拟线程池失败", e);
+        }
+    }
+
 }
@@ -26,7 +26,7 @@ public class RpcMessageChecker {
             throw new RpcException(RpcError.SERVICE_INVOCATION_FAILURE, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
         }
         //响应与请求的请求号不同
-        if (!rpcRequest.getRequestId().equals(rpcResponse.getRequestId())){
+        if (rpcRequest.getRequestId() != rpcResponse.getRequestId()){
             throw new RpcException(RpcError.RESPONSE_NOT_MATCH, INTERFACE_NAME+ ":" + rpcRequest.getInterfaceName());
         }
         //调用失败
@@ -0,0 +1,33 @@
+package com.szq.rpc.util;
+
+import java.lang.reflect.Method;
+
+/**
+ * @author Ashur
+ * @description 根据方法名和参数类型计算方法号
+ * 方法号为方法签名字符串"name(type1,type2)"的hashCode，String.hashCode的算法由JLS固定，客户端和服务端各自计算结果一致，
+ * 客户端只需发送4字节的方法号，不必每次都发送方法名和Class<?>[]参数类型。0保留表示“未设置方法号”
+ */
+public class MethodIdUtil {
+
+    private MethodIdUtil(){
+    }
+
+    public static int methodId(Method method){
+        return methodId(method.getName(), method.getParameterTypes());
+    }
+
+    public static int methodId(String methodName, Class<?>[] paramTypes){
+        StringBuilder signature = new StringBuilder(methodName).append('(');
+        if (paramTypes != null){
+            for (int i = 0; i < paramTypes.length; i++) {
+                if (i > 0){
+                    signature.append(',');
+                }
+                signature.append(paramTypes[i].getName());
+            }
+        }
+        int id = signature.append(')').toString().hashCode();
+        return id == 0 ? 1 : id;
+    }
+}
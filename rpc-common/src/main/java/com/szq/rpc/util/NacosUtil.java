@@ -3,6 +3,7 @@ package com.szq.rpc.util;
 import com.alibaba.nacos.api.exception.NacosException;
 import com.alibaba.nacos.api.naming.NamingFactory;
 import com.alibaba.nacos.api.naming.NamingService;
+import com.alibaba.nacos.api.naming.listener.EventListener;
 import com.alibaba.nacos.api.naming.pojo.Instance;
 import com.szq.rpc.enumertaion.RpcError;
 import com.szq.rpc.exception.RpcException;
@@ -63,6 +64,15 @@ public class NacosUtil {
         return namingService.getAllInstances(serviceName);
     }
 
+    /**
+     * @description 订阅服务的实例变更，实例列表变化时注册中心主动推送
+     * @param serviceName, listener
+     * @return [void]
+     */
+    public static void subscribe(String serviceName, EventListener listener) throws NacosException {
+        namingService.subscribe(serviceName, listener);
+    }
+
     /**
      * @description 注销服务
      * @param
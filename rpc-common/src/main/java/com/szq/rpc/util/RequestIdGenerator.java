@@ -0,0 +1,22 @@
+package com.szq.rpc.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Ashur
+ * @description 全局单调递增的请求号生成器
+ * 取代每次调用UUID.randomUUID()：不再消耗SecureRandom，线路上只占8字节，客户端按long查找待处理请求也无需哈希字符串
+ */
+public class RequestIdGenerator {
+    /**
+     * 从1开始，0保留给心跳包等不需要响应的请求
+     */
+    private static final AtomicLong ID = new AtomicLong();
+
+    private RequestIdGenerator(){
+    }
+
+    public static long nextId(){
+        return ID.incrementAndGet();
+    }
+}
@@ -0,0 +1,19 @@
+package com.szq.rpc.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * @author Ashur
+ * @description 标识客户端的异步镜像接口，注解放在镜像接口上，value为服务端实际发布的服务接口
+ * 镜像接口中的方法与服务接口同名同参，返回值改为CompletableFuture，调用时按服务接口发送请求，服务端无需任何改动
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface AsyncMirror {
+
+    public Class<?> value();
+
+}
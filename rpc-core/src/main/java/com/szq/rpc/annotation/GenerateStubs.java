@@ -0,0 +1,20 @@
+package com.szq.rpc.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * @author Ashur
+ * @description 在编译期为列出的服务接口生成客户端存根类"接口名_RpcStub"，需要引入rpc-stub-processor
+ * 注解放在客户端任意一个类上即可，RpcClientProxy.getProxy()会优先使用生成的存根类
+ */
+@Target(ElementType.TYPE)
+//只在编译期使用
+@Retention(RetentionPolicy.SOURCE)
+public @interface GenerateStubs {
+
+    public Class<?>[] value();
+
+}
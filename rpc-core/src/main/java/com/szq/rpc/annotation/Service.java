@@ -1,5 +1,7 @@
 package com.szq.rpc.annotation;
 
+import com.szq.rpc.enumertaion.DispatchMode;
+
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
@@ -17,4 +19,9 @@ public @interface Service {
 
     public String name() default "";
 
+    /**
+     * 服务方法的执行线程，默认提交到共用的业务线程池
+     */
+    public DispatchMode dispatch() default DispatchMode.SHARED;
+
 }
\ No newline at end of file
@@ -1,56 +1,137 @@
 package com.szq.rpc.codec;
 
+import com.szq.rpc.compress.Compressor;
+import com.szq.rpc.entity.RpcBatchRequest;
+import com.szq.rpc.entity.RpcBatchResponse;
 import com.szq.rpc.entity.RpcRequest;
 import com.szq.rpc.entity.RpcResponse;
+import com.szq.rpc.entity.RpcStreamChunk;
+import com.szq.rpc.entity.RpcStreamCredit;
 import com.szq.rpc.enumertaion.PackageType;
 import com.szq.rpc.enumertaion.RpcError;
 import com.szq.rpc.exception.RpcException;
+import com.szq.rpc.serializer.ByteBufSerializer;
 import com.szq.rpc.serializer.CommonSerializer;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.ReplayingDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.MessageToMessageDecoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
 
+import static com.szq.rpc.codec.ProtocolConstants.*;
+
 /**
  * @author Ashur
  * @description 通用的解码拦截器
+ * 需放在RpcFrameDecoder之后，收到的总是一个完整帧，因此不再需要ReplayingDecoder的重放机制
  */
-public class CommonDecoder extends ReplayingDecoder {
+public class CommonDecoder extends MessageToMessageDecoder<ByteBuf> {
     private static final Logger logger = LoggerFactory.getLogger(CommonDecoder.class);
-    private static final int MAGIC_NUMBER = 0xCAFEBABE;
+
+    /**
+     * 按序列化器编号缓存实例，解码器属于单个Channel，只会在其EventLoop线程中使用
+     */
+    private final CommonSerializer[] serializers = new CommonSerializer[8];
 
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
-        //从缓冲区中读取数据
-        int magic = in.readInt();
-        if(magic != MAGIC_NUMBER){
-            logger.error("不识别的协议包：{}", magic);
-            throw new RpcException(RpcError.UNKNOWN_PROTOCOL);
+        in.skipBytes(2);
+        byte version = in.readByte();
+        if(version != VERSION){
+            logger.error("不支持的协议版本：{}", version);
+            throw new RpcException(RpcError.UNSUPPORTED_PROTOCOL_VERSION);
         }
-        int packageCode = in.readInt();
+        int packageCode = in.readByte();
+        int serializerCode = in.readByte();
+        int flags = in.readByte();
+        //请求号暂不参与解码，同时保存在消息体中
+        in.skipBytes(8);
+        int length = in.readInt();
         Class<?> packageClass;
         if(packageCode == PackageType.REQUEST_PACK.getCode()){
             packageClass = RpcRequest.class;
         }else if (packageCode == PackageType.RESPONSE_PACK.getCode()){
             packageClass = RpcResponse.class;
+        }else if (packageCode == PackageType.BATCH_REQUEST_PACK.getCode()){
+            packageClass = RpcBatchRequest.class;
+        }else if (packageCode == PackageType.BATCH_RESPONSE_PACK.getCode()){
+            packageClass = RpcBatchResponse.class;
+        }else if (packageCode == PackageType.STREAM_CHUNK_PACK.getCode()){
+            packageClass = RpcStreamChunk.class;
+        }else if (packageCode == PackageType.STREAM_CREDIT_PACK.getCode()){
+            packageClass = RpcStreamCredit.class;
         }else {
             logger.error("不识别的数据包：{}", packageCode);
             throw new RpcException(RpcError.UNKNOWN_PACKAGE_TYPE);
         }
-        int serializerCode = in.readInt();
-        CommonSerializer serializer = CommonSerializer.getByCode(serializerCode);
+        CommonSerializer serializer = getSerializer(serializerCode);
         if(serializer == null){
             logger.error("不识别的反序列化器：{}", serializerCode);
             throw new RpcException(RpcError.UNKNOWN_SERIALIZER);
         }
-    int length = in.readInt();
-    byte[] bytes = new byte[length];
-    in.readBytes(bytes);
-    Object obj = serializer.deserialize(bytes, packageClass);
-    //添加到对象列表
-    out.add(obj);
+        int compressorCode = (flags & FLAG_COMPRESSOR_MASK) >>> FLAG_COMPRESSOR_SHIFT;
+        Object obj;
+        if(compressorCode == 0){
+            obj = deserialize(serializer, in.readSlice(length), packageClass);
+        }else {
+            ByteBuf body = decompress(ctx, compressorCode, in.readSlice(length));
+            try {
+                obj = deserialize(serializer, body, packageClass);
+            }finally {
+                body.release();
+            }
+        }
+        //添加到对象列表
+        out.add(obj);
+    }
+
+    private static Object deserialize(CommonSerializer serializer, ByteBuf body, Class<?> packageClass){
+        if(serializer instanceof ByteBufSerializer){
+            //直接在消息体切片上反序列化，不再拷贝出byte[]
+            return ((ByteBufSerializer) serializer).deserialize(body, packageClass);
+        }
+        byte[] bytes = new byte[body.readableBytes()];
+        body.readBytes(bytes);
+        return serializer.deserialize(bytes, packageClass);
+    }
+
+    /**
+     * @description 压缩的消息体以4字节的原始长度开头，解压到新申请的缓冲区中，由调用方释放
+     * @param ctx, compressorCode, body
+     * @return [io.netty.buffer.ByteBuf]
+     */
+    private static ByteBuf decompress(ChannelHandlerContext ctx, int compressorCode, ByteBuf body){
+        Compressor compressor = Compressor.getByCode(compressorCode);
+        if(compressor == null){
+            logger.error("不识别的压缩算法：{}", compressorCode);
+            throw new RpcException(RpcError.UNKNOWN_COMPRESSOR);
+        }
+        int originalLength = body.readInt();
+        if(originalLength < 0 || originalLength > MAX_DECOMPRESSED_LENGTH){
+            throw new CorruptedFrameException("解压后的长度不合法：" + originalLength);
+        }
+        ByteBuf decompressed = ctx.alloc().buffer(originalLength);
+        try {
+            compressor.decompress(body, decompressed, originalLength);
+        }catch (RuntimeException e){
+            decompressed.release();
+            throw e;
+        }
+        return decompressed;
+    }
+
+    private CommonSerializer getSerializer(int code){
+        if(code < 0 || code >= serializers.length){
+            return null;
+        }
+        CommonSerializer serializer = serializers[code];
+        if(serializer == null){
+            serializer = CommonSerializer.getByCode(code);
+            serializers[code] = serializer;
+        }
+        return serializer;
     }
 }
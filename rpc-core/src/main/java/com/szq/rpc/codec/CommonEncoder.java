@@ -1,13 +1,20 @@
 package com.szq.rpc.codec;
 
+import com.szq.rpc.compress.Compressor;
+import com.szq.rpc.entity.RpcBatchRequest;
+import com.szq.rpc.entity.RpcBatchResponse;
 import com.szq.rpc.entity.RpcRequest;
+import com.szq.rpc.entity.RpcResponse;
+import com.szq.rpc.entity.RpcStreamChunk;
+import com.szq.rpc.entity.RpcStreamCredit;
 import com.szq.rpc.enumertaion.PackageType;
+import com.szq.rpc.serializer.ByteBufSerializer;
 import com.szq.rpc.serializer.CommonSerializer;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 
-import static java.lang.System.out;
+import static com.szq.rpc.codec.ProtocolConstants.*;
 
 
 /**
@@ -27,26 +34,124 @@ import static java.lang.System.out;
 
 public class CommonEncoder extends MessageToByteEncoder {
 
-    private static final int MAGIC_NUMBER = 0xCAFEBABE;
-
     private final CommonSerializer serializer;
+    /**
+     * 消息体压缩算法，为null时不压缩；只压缩长度不小于compressionThreshold的消息体
+     */
+    private final Compressor compressor;
+    private final int compressionThreshold;
 
     public CommonEncoder(CommonSerializer serializer){
+        this(serializer, null, DEFAULT_COMPRESSION_THRESHOLD);
+    }
+
+    public CommonEncoder(CommonSerializer serializer, Compressor compressor, int compressionThreshold){
         this.serializer = serializer;
+        this.compressor = compressor;
+        this.compressionThreshold = compressionThreshold;
     }
 
     @Override
     protected void encode(ChannelHandlerContext ctx, Object msg, ByteBuf out) throws Exception {
-        //数据写到缓冲区
-        out.writeInt(MAGIC_NUMBER);
-        if(msg instanceof RpcRequest){
-            out.writeInt(PackageType.REQUEST_PACK.getCode());
+        int frameIndex = out.writerIndex();
+        out.writeShort(MAGIC_NUMBER);
+        out.writeByte(VERSION);
+        out.writeByte(packageCode(msg));
+        out.writeByte(serializer.getCode());
+        out.writeByte(flags(msg));
+        out.writeLong(requestId(msg));
+        int lengthIndex = out.writerIndex();
+        writeBody(msg, out);
+        if(compressor != null && out.writerIndex() - lengthIndex - 4 >= compressionThreshold){
+            compressBody(ctx, out, frameIndex, lengthIndex);
+        }
+    }
+
+    /**
+     * @description 将已写入out的消息体替换为压缩后的数据，并在标志位中记录压缩算法；压缩后没有变小则保持原样
+     * @param ctx, out, frameIndex, lengthIndex
+     * @return [void]
+     */
+    private void compressBody(ChannelHandlerContext ctx, ByteBuf out, int frameIndex, int lengthIndex){
+        int bodyIndex = lengthIndex + 4;
+        int bodyLength = out.writerIndex() - bodyIndex;
+        ByteBuf compressed = ctx.alloc().buffer(bodyLength);
+        try {
+            compressor.compress(out.slice(bodyIndex, bodyLength), compressed);
+            if(compressed.readableBytes() + 4 >= bodyLength){
+                return;
+            }
+            out.writerIndex(bodyIndex);
+            out.writeInt(bodyLength);
+            out.writeBytes(compressed);
+            out.setInt(lengthIndex, out.writerIndex() - bodyIndex);
+            out.setByte(frameIndex + FLAGS_OFFSET,
+                    out.getByte(frameIndex + FLAGS_OFFSET) | (compressor.getCode() << FLAG_COMPRESSOR_SHIFT));
+        }finally {
+            compressed.release();
+        }
+    }
+
+    private void writeBody(Object msg, ByteBuf out){
+        if(serializer instanceof ByteBufSerializer){
+            //先占位长度字段，序列化器直接写入out后再回填实际长度，省去中间byte[]
+            int lengthIndex = out.writerIndex();
+            out.writeInt(0);
+            ((ByteBufSerializer) serializer).serialize(msg, out);
+            out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
         }else {
-            out.writeInt(PackageType.RESPONSE_PACK.getCode());
+            byte[] bytes = serializer.serialize(msg);
+            out.writeInt(bytes.length);
+            out.writeBytes(bytes);
+        }
+    }
+
+    private static int packageCode(Object msg){
+        if(msg instanceof RpcRequest){
+            return PackageType.REQUEST_PACK.getCode();
+        }
+        if(msg instanceof RpcBatchRequest){
+            return PackageType.BATCH_REQUEST_PACK.getCode();
+        }
+        if(msg instanceof RpcBatchResponse){
+            return PackageType.BATCH_RESPONSE_PACK.getCode();
+        }
+        if(msg instanceof RpcStreamChunk){
+            return PackageType.STREAM_CHUNK_PACK.getCode();
+        }
+        if(msg instanceof RpcStreamCredit){
+            return PackageType.STREAM_CREDIT_PACK.getCode();
+        }
+        return PackageType.RESPONSE_PACK.getCode();
+    }
+
+    private static long requestId(Object msg){
+        if(msg instanceof RpcRequest){
+            return ((RpcRequest) msg).getRequestId();
+        }
+        if(msg instanceof RpcResponse){
+            return ((RpcResponse<?>) msg).getRequestId();
+        }
+        if(msg instanceof RpcBatchRequest){
+            return ((RpcBatchRequest) msg).getRequestId();
+        }
+        if(msg instanceof RpcBatchResponse){
+            return ((RpcBatchResponse) msg).getRequestId();
+        }
+        if(msg instanceof RpcStreamChunk){
+            return ((RpcStreamChunk) msg).getRequestId();
+        }
+        if(msg instanceof RpcStreamCredit){
+            return ((RpcStreamCredit) msg).getRequestId();
+        }
+        return 0L;
+    }
+
+    private static int flags(Object msg){
+        int flags = 0;
+        if(msg instanceof RpcRequest && Boolean.TRUE.equals(((RpcRequest) msg).getHeartBeat())){
+            flags |= FLAG_HEARTBEAT;
         }
-        out.writeInt(serializer.getCode());
-        byte[] bytes = serializer.serialize(msg);
-        out.writeInt(bytes.length);
-        out.writeBytes(bytes);
+        return flags;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,61 @@
+package com.szq.rpc.codec;
+
+/**
+ * @author Ashur
+ * @description 自定义协议的帧格式常量
+ * 当前版本(v2)的帧头共18字节，请求号为RpcRequest/RpcResponse中的数值请求号：
+ * +--------+---------+------+------------+-------+-----------+------------+
+ * | 魔数2B | 版本1B  | 类型1B | 序列化器1B | 标志1B | 请求号8B   | 消息体长度4B |
+ * +--------+---------+------+------------+-------+-----------+------------+
+ * 标志位的第0位为心跳，第1~3位为压缩算法编号(0表示未压缩)；压缩时消息体为4字节的原始长度加压缩后的数据。
+ * v1的消息体中请求号为字符串，v2改为long后两者的消息体互不兼容，解码端拒绝v2以外的版本；
+ * 更早的0xCAFEBABE格式同样不再识别，客户端与服务端需一起升级
+ */
+public final class ProtocolConstants {
+
+    private ProtocolConstants(){
+    }
+
+    public static final short MAGIC_NUMBER = (short) 0xBABE;
+    public static final byte VERSION = 2;
+    public static final int HEADER_LENGTH = 18;
+    /**
+     * 消息体长度字段在帧头中的偏移量
+     */
+    public static final int LENGTH_FIELD_OFFSET = 14;
+    public static final int LENGTH_FIELD_LENGTH = 4;
+    /**
+     * 标志位在帧头中的偏移量
+     */
+    public static final int FLAGS_OFFSET = 5;
+
+    /**
+     * 单帧最大长度(含帧头)，超过则视为异常帧并断开连接，防止恶意或错误的长度字段撑爆内存
+     */
+    public static final int DEFAULT_MAX_FRAME_LENGTH = 8 * 1024 * 1024;
+
+    /**
+     * 标志位：心跳包
+     */
+    public static final byte FLAG_HEARTBEAT = 0x01;
+    /**
+     * 标志位中压缩算法编号所在的位
+     */
+    public static final int FLAG_COMPRESSOR_MASK = 0x0E;
+    public static final int FLAG_COMPRESSOR_SHIFT = 1;
+
+    /**
+     * 默认只压缩不小于该长度(字节)的消息体，小消息压缩收益低，不付出压缩的开销
+     */
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+    /**
+     * 解压后消息体的长度上限，防止很小的压缩帧解压出超大数据撑爆内存
+     */
+    public static final int MAX_DECOMPRESSED_LENGTH = 8 * DEFAULT_MAX_FRAME_LENGTH;
+
+    /**
+     * 流式调用的初始额度(元素个数)，客户端和服务端约定的同一个值，服务端不必等待客户端的首次授权即可开始发送；
+     * 客户端每消费一半额度补充一次，缓存的元素数不超过该值
+     */
+    public static final int STREAM_WINDOW = 64;
+}
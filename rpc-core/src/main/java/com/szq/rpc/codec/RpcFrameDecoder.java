@@ -0,0 +1,42 @@
+package com.szq.rpc.codec;
+
+import com.szq.rpc.enumertaion.RpcError;
+import com.szq.rpc.exception.RpcException;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.szq.rpc.codec.ProtocolConstants.*;
+
+/**
+ * @author Ashur
+ * @description 按长度字段切分完整帧的拆包器，替代原先基于ReplayingDecoder的逐字段读取
+ * 数据不足一帧时直接返回等待更多数据，不会像ReplayingDecoder那样抛出重放信号并从头重新解析；
+ * 切出的帧是原缓冲区的retainedSlice，没有拷贝
+ */
+public class RpcFrameDecoder extends LengthFieldBasedFrameDecoder {
+    private static final Logger logger = LoggerFactory.getLogger(RpcFrameDecoder.class);
+
+    public RpcFrameDecoder(){
+        this(DEFAULT_MAX_FRAME_LENGTH);
+    }
+
+    public RpcFrameDecoder(int maxFrameLength){
+        super(maxFrameLength, LENGTH_FIELD_OFFSET, LENGTH_FIELD_LENGTH, 0, 0);
+    }
+
+    @Override
+    protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+        if(in.readableBytes() < 2){
+            return null;
+        }
+        short magic = in.getShort(in.readerIndex());
+        if(magic != MAGIC_NUMBER){
+            logger.error("不识别的协议包：{}", magic);
+            throw new RpcException(RpcError.UNKNOWN_PROTOCOL);
+        }
+        return super.decode(ctx, in);
+    }
+}
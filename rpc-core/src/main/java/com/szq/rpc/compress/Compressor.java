@@ -0,0 +1,53 @@
+package com.szq.rpc.compress;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * @author Ashur
+ * @description 消息体压缩接口，位于编解码器与序列化器之间，编号写入帧头的标志位
+ * 实现类无状态或只使用线程内的状态，同一实例可被多个Channel共享
+ */
+public interface Compressor {
+    Integer NONE = 0;
+    Integer GZIP = 1;
+    Integer DEFLATE = 2;
+    Integer SNAPPY = 3;
+    Integer LZ4 = 4;
+
+    /**
+     * @description 按编号获取压缩算法，未压缩或编号不识别时返回null
+     * @param code
+     * @return [com.szq.rpc.compress.Compressor]
+     */
+    static Compressor getByCode(int code) {
+        switch (code) {
+            case 1:
+                return GzipCompressor.INSTANCE;
+            case 2:
+                return DeflateCompressor.INSTANCE;
+            case 3:
+                return SnappyCompressor.INSTANCE;
+            case 4:
+                return Lz4Compressor.INSTANCE;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @description 压缩in的全部可读字节并追加写入out
+     * @param in, out
+     * @return [void]
+     */
+    void compress(ByteBuf in, ByteBuf out);
+
+    /**
+     * @description 解压in的全部可读字节并追加写入out
+     * @param in, out
+     * @param originalLength 压缩前的长度，由编码端写入帧中
+     * @return [void]
+     */
+    void decompress(ByteBuf in, ByteBuf out, int originalLength);
+
+    int getCode();
+}
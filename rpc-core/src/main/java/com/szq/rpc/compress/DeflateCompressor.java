@@ -0,0 +1,90 @@
+package com.szq.rpc.compress;
+
+import com.szq.rpc.enumertaion.CompressorCode;
+import com.szq.rpc.exception.SerializeException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * @author Ashur
+ * @description JDK自带的deflate压缩(不带gzip头尾)，使用最快的压缩级别，
+ * Deflater/Inflater持有本地内存，按线程复用并在每次使用前reset，不必每条消息创建
+ */
+public class DeflateCompressor implements Compressor {
+    private static final Logger logger = LoggerFactory.getLogger(DeflateCompressor.class);
+
+    static final DeflateCompressor INSTANCE = new DeflateCompressor();
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final ThreadLocal<Deflater> deflaterThreadLocal = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED, true));
+    private static final ThreadLocal<Inflater> inflaterThreadLocal = ThreadLocal.withInitial(() -> new Inflater(true));
+    private static final ThreadLocal<byte[]> bufferThreadLocal = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    @Override
+    public void compress(ByteBuf in, ByteBuf out) {
+        Deflater deflater = deflaterThreadLocal.get();
+        byte[] buffer = bufferThreadLocal.get();
+        deflater.reset();
+        setInput(in, deflater::setInput);
+        deflater.finish();
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            out.writeBytes(buffer, 0, n);
+        }
+    }
+
+    @Override
+    public void decompress(ByteBuf in, ByteBuf out, int originalLength) {
+        Inflater inflater = inflaterThreadLocal.get();
+        byte[] buffer = bufferThreadLocal.get();
+        inflater.reset();
+        setInput(in, inflater::setInput);
+        out.ensureWritable(originalLength);
+        try {
+            int total = 0;
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("deflate数据不完整");
+                }
+                total += n;
+                if (total > originalLength) {
+                    throw new DataFormatException("解压后的长度超过帧中声明的长度: " + originalLength);
+                }
+                out.writeBytes(buffer, 0, n);
+            }
+        } catch (DataFormatException e) {
+            logger.error("deflate解压时有错误发生:", e);
+            throw new SerializeException("deflate解压时有错误发生");
+        }
+    }
+
+    /**
+     * @description 堆内存直接传入底层数组，直接内存先拷贝出byte[]，Java 8的Deflater/Inflater只接受byte[]
+     */
+    private static void setInput(ByteBuf in, InputSetter setter) {
+        int length = in.readableBytes();
+        if (in.hasArray()) {
+            setter.setInput(in.array(), in.arrayOffset() + in.readerIndex(), length);
+        } else {
+            setter.setInput(ByteBufUtil.getBytes(in), 0, length);
+        }
+        in.skipBytes(length);
+    }
+
+    private interface InputSetter {
+        void setInput(byte[] bytes, int offset, int length);
+    }
+
+    @Override
+    public int getCode() {
+        return CompressorCode.valueOf("DEFLATE").getCode();
+    }
+}
@@ -0,0 +1,55 @@
+package com.szq.rpc.compress;
+
+import com.szq.rpc.enumertaion.CompressorCode;
+import com.szq.rpc.exception.SerializeException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * @author Ashur
+ * @description JDK自带的gzip压缩，压缩率较高但速度较慢，适合带宽紧张而CPU充足的场景，也便于与其他语言互通
+ */
+public class GzipCompressor implements Compressor {
+    private static final Logger logger = LoggerFactory.getLogger(GzipCompressor.class);
+
+    static final GzipCompressor INSTANCE = new GzipCompressor();
+
+    private static final int BUFFER_SIZE = 8192;
+
+    @Override
+    public void compress(ByteBuf in, ByteBuf out) {
+        try (GZIPOutputStream gzip = new GZIPOutputStream(new ByteBufOutputStream(out), BUFFER_SIZE)) {
+            in.readBytes(gzip, in.readableBytes());
+        } catch (IOException e) {
+            logger.error("gzip压缩时有错误发生:", e);
+            throw new SerializeException("gzip压缩时有错误发生");
+        }
+    }
+
+    @Override
+    public void decompress(ByteBuf in, ByteBuf out, int originalLength) {
+        out.ensureWritable(originalLength);
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteBufInputStream(in), BUFFER_SIZE)) {
+            while (out.writeBytes(gzip, BUFFER_SIZE) > 0) {
+                if (out.readableBytes() > originalLength) {
+                    throw new IOException("解压后的长度超过帧中声明的长度: " + originalLength);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("gzip解压时有错误发生:", e);
+            throw new SerializeException("gzip解压时有错误发生");
+        }
+    }
+
+    @Override
+    public int getCode() {
+        return CompressorCode.valueOf("GZIP").getCode();
+    }
+}
@@ -0,0 +1,61 @@
+package com.szq.rpc.compress;
+
+import com.szq.rpc.enumertaion.CompressorCode;
+import com.szq.rpc.exception.SerializeException;
+import io.netty.buffer.ByteBuf;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author Ashur
+ * @description 基于lz4-java的LZ4块压缩，压缩和解压速度最快，适合对延迟敏感的大消息
+ * 通过ByteBuffer直接读写ByteBuf的内存，不经过byte[]；解压使用会检查边界的safe解压器，防止恶意数据越界
+ */
+public class Lz4Compressor implements Compressor {
+    private static final Logger logger = LoggerFactory.getLogger(Lz4Compressor.class);
+
+    static final Lz4Compressor INSTANCE = new Lz4Compressor();
+
+    private static final LZ4Factory factory = LZ4Factory.fastestInstance();
+    private static final LZ4Compressor compressor = factory.fastCompressor();
+    private static final LZ4SafeDecompressor decompressor = factory.safeDecompressor();
+
+    @Override
+    public void compress(ByteBuf in, ByteBuf out) {
+        int length = in.readableBytes();
+        int maxLength = compressor.maxCompressedLength(length);
+        out.ensureWritable(maxLength);
+        ByteBuffer src = in.nioBuffer(in.readerIndex(), length);
+        ByteBuffer dest = out.nioBuffer(out.writerIndex(), maxLength);
+        int compressedLength = compressor.compress(src, src.position(), length, dest, dest.position(), maxLength);
+        in.skipBytes(length);
+        out.writerIndex(out.writerIndex() + compressedLength);
+    }
+
+    @Override
+    public void decompress(ByteBuf in, ByteBuf out, int originalLength) {
+        int length = in.readableBytes();
+        out.ensureWritable(originalLength);
+        ByteBuffer src = in.nioBuffer(in.readerIndex(), length);
+        ByteBuffer dest = out.nioBuffer(out.writerIndex(), originalLength);
+        try {
+            int decompressedLength = decompressor.decompress(src, src.position(), length, dest, dest.position(), originalLength);
+            in.skipBytes(length);
+            out.writerIndex(out.writerIndex() + decompressedLength);
+        } catch (LZ4Exception e) {
+            logger.error("lz4解压时有错误发生:", e);
+            throw new SerializeException("lz4解压时有错误发生");
+        }
+    }
+
+    @Override
+    public int getCode() {
+        return CompressorCode.valueOf("LZ4").getCode();
+    }
+}
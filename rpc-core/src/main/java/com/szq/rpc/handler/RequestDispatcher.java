@@ -0,0 +1,57 @@
+package com.szq.rpc.handler;
+
+import com.szq.rpc.enumertaion.DispatchMode;
+import com.szq.rpc.factory.ThreadPoolFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * @author Ashur
+ * @description 决定每个服务的请求在哪个线程上执行
+ * 未单独配置的服务使用默认分发方式；业务线程池都由ThreadPoolFactory创建，队列有界，
+ * 队列满时execute()抛出RejectedExecutionException，由调用方立即返回“服务端繁忙”的响应，不会阻塞I/O线程
+ */
+public class RequestDispatcher {
+    /**
+     * 所有服务共用的业务线程池名称前缀，独占线程池在其后加上服务名
+     */
+    private static final String SHARED_POOL_PREFIX = "rpc-service-handler";
+
+    private static volatile DispatchMode defaultMode = DispatchMode.SHARED;
+    /**
+     * key = 服务名称, value = 该服务的分发方式
+     */
+    private static final Map<String, DispatchMode> modes = new ConcurrentHashMap<>();
+
+    public static void setDefaultMode(DispatchMode mode){
+        defaultMode = mode;
+    }
+
+    /**
+     * @description 设置某个服务的分发方式，一般在发布服务时根据@Service注解设置
+     * @param serviceName, mode
+     * @return [void]
+     */
+    public static void register(String serviceName, DispatchMode mode){
+        modes.put(serviceName, mode);
+    }
+
+    /**
+     * @description 获取执行该服务请求的线程池
+     * @param serviceName
+     * @return [java.util.concurrent.ExecutorService] 返回null表示直接在当前I/O线程上执行
+     */
+    public static ExecutorService executorFor(String serviceName){
+        DispatchMode mode = modes.getOrDefault(serviceName, defaultMode);
+        switch (mode){
+            case INLINE:
+                return null;
+            case ISOLATED:
+                return ThreadPoolFactory.createDefaultThreadPool(SHARED_POOL_PREFIX + "-" + serviceName, true);
+            default:
+                return ThreadPoolFactory.createDefaultThreadPool(SHARED_POOL_PREFIX, true);
+        }
+    }
+}
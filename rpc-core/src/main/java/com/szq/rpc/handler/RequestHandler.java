@@ -3,13 +3,19 @@ package com.szq.rpc.handler;
 import com.szq.rpc.entity.RpcRequest;
 import com.szq.rpc.entity.RpcResponse;
 import com.szq.rpc.enumertaion.ResponseCode;
+import com.szq.rpc.exception.RpcException;
+import com.szq.rpc.provider.MethodInvoker;
 import com.szq.rpc.provider.ServiceProvider;
 import com.szq.rpc.provider.ServiceProviderImpl;
+import com.szq.rpc.util.MethodIdUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+
 
 
 /**
@@ -23,23 +29,95 @@ public class RequestHandler{
     static {
         serviceProvider = new ServiceProviderImpl();
     }
+    /**
+     * @description 同步处理请求，异步服务方法会在当前线程上等待其完成，供阻塞式的Socket服务端使用
+     * @param rpcRequest
+     * @return [java.lang.Object] 响应对象
+     */
     public Object handle(RpcRequest rpcRequest){
-        //从服务端本地注册表中获取服务实体
-        Object service = serviceProvider.getServiceProvider(rpcRequest.getInterfaceName());
-        return invokeTargetMethod(rpcRequest, service);
+        CompletableFuture<Object> response = new CompletableFuture<>();
+        handle(rpcRequest, response::complete);
+        return response.join();
+    }
+
+    /**
+     * @description 处理请求，响应通过回调交给调用方
+     * 普通方法在当前线程上调用回调；返回CompletableFuture的异步服务方法在其完成时才调用回调，
+     * 等待期间不占用任何线程
+     * @param rpcRequest, callback
+     * @return [void]
+     */
+    public void handle(RpcRequest rpcRequest, Consumer<Object> callback){
+        //从服务端本地注册表中获取预先解析好的方法
+        MethodInvoker invoker;
+        try {
+            invoker = serviceProvider.getMethodInvoker(rpcRequest.getInterfaceName(), methodIdOf(rpcRequest));
+        }catch (RpcException e){
+            //服务不存在时同样以响应告知客户端，批量请求中的其他子请求不受影响
+            logger.error("找不到服务: {}", rpcRequest.getInterfaceName());
+            callback.accept(RpcResponse.fail(ResponseCode.CLASS_NOT_FOUND, rpcRequest.getRequestId()));
+            return;
+        }
+        if (invoker == null){
+            callback.accept(RpcResponse.fail(ResponseCode.METHOD_NOT_FOUND, rpcRequest.getRequestId()));
+            return;
+        }
+        invokeTargetMethod(rpcRequest, invoker, callback);
+    }
+
+    /**
+     * @description 请求调用的方法是否声明返回Iterator(流式调用)，按声明的返回值类型而不是实际返回的对象判断，与客户端的判断保持一致
+     * @param rpcRequest
+     * @return [boolean]
+     */
+    public boolean isStreaming(RpcRequest rpcRequest){
+        try {
+            MethodInvoker invoker = serviceProvider.getMethodInvoker(rpcRequest.getInterfaceName(), methodIdOf(rpcRequest));
+            return invoker != null && invoker.isStreaming();
+        }catch (RpcException e){
+            return false;
+        }
     }
 
-    private Object invokeTargetMethod(RpcRequest rpcRequest,Object service){
+    private static int methodIdOf(RpcRequest rpcRequest){
+        //客户端没有发送方法号时(旧版本客户端)，按方法名和参数类型计算
+        int methodId = rpcRequest.getMethodId();
+        if (methodId == 0){
+            methodId = MethodIdUtil.methodId(rpcRequest.getMethodName(), rpcRequest.getParamTypes());
+        }
+        return methodId;
+    }
+
+    private void invokeTargetMethod(RpcRequest rpcRequest, MethodInvoker invoker, Consumer<Object> callback){
         Object result;
         try {
-            //getClass()获取的是实例对象的类型
-            Method method = service.getClass().getMethod(rpcRequest.getMethodName(), rpcRequest.getParamTypes());
-            result = method.invoke(service, rpcRequest.getParameters());
-            logger.info("服务: {}成功调用方法: {}",rpcRequest.getInterfaceName(), rpcRequest.getMethodName());
-        }catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e){
-            return RpcResponse.fail(ResponseCode.METHOD_NOT_FOUND, rpcRequest.getRequestId());
+            result = invoker.invoke(rpcRequest.getParameters());
+        }catch (Throwable e){
+            callback.accept(fail(rpcRequest, invoker, e));
+            return;
+        }
+        //异步服务方法，在其完成时再写回响应
+        if (result instanceof CompletionStage){
+            ((CompletionStage<?>) result).whenComplete((value, cause) -> {
+                if (cause != null){
+                    callback.accept(fail(rpcRequest, invoker, cause instanceof CompletionException && cause.getCause() != null ? cause.getCause() : cause));
+                }else {
+                    callback.accept(success(rpcRequest, invoker, value));
+                }
+            });
+            return;
         }
+        callback.accept(success(rpcRequest, invoker, result));
+    }
+
+    private static Object success(RpcRequest rpcRequest, MethodInvoker invoker, Object result){
+        logger.info("服务: {}成功调用方法: {}",rpcRequest.getInterfaceName(), invoker.getMethodName());
         //方法调用成功
         return RpcResponse.success(result, rpcRequest.getRequestId());
     }
-}
\ No newline at end of file
+
+    private static Object fail(RpcRequest rpcRequest, MethodInvoker invoker, Throwable cause){
+        logger.error("服务: {}调用方法: {}时有错误发生", rpcRequest.getInterfaceName(), invoker.getMethodName(), cause);
+        return RpcResponse.fail(ResponseCode.FAIL, rpcRequest.getRequestId());
+    }
+}
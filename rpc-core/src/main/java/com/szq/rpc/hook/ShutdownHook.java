@@ -1,6 +1,7 @@
 package com.szq.rpc.hook;
 
 import com.szq.rpc.factory.ThreadPoolFactory;
+import com.szq.rpc.transport.netty.TransportResources;
 import com.szq.rpc.util.NacosUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,6 +40,8 @@ public class ShutdownHook {
             NacosUtil.clearRegistry();
             //关闭所有线程池
             ThreadPoolFactory.shutDownAll();
+            //关闭Netty的事件循环线程组
+            TransportResources.shared().shutdown();
         }));
     }
 }
@@ -0,0 +1,287 @@
+package com.szq.rpc.loadbalancer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Ashur
+ * @description 单个服务端的熔断器，由EndpointStats持有，调用结果随EndpointStats.end()计入
+ * 两种情况会熔断(OPEN)：滑动时间窗口内的失败率达到阈值(且请求数不少于最小值)，或连续失败次数达到阈值(异常实例摘除)。
+ * 熔断期间该服务端不再作为负载均衡的候选；熔断时间到期后进入半开(HALF_OPEN)，放行少量真实请求作为探测，
+ * 探测全部成功后恢复(CLOSED)，任一探测失败则再次熔断，熔断时间按次数翻倍直至上限。
+ * 半开期间只有占用了本轮探测名额的请求影响状态，熔断前发出的请求、流式调用等其他请求迟到的结果一律忽略。
+ * 失败指未收到服务端响应(超时、连接失败、发送失败)，服务端返回的业务失败不计入。
+ * 配置为进程级的静态值，对之后的状态判断生效
+ */
+public final class CircuitBreaker {
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * 滑动窗口划分的桶数，窗口随时间按桶滚动
+     */
+    private static final int BUCKETS = 10;
+
+    private static volatile long windowMillis = 10_000;
+    private static volatile int minimumRequests = 20;
+    private static volatile int failureRatePercent = 50;
+    /**
+     * 连续失败次数阈值，小于等于0表示不按连续失败摘除
+     */
+    private static volatile int consecutiveFailures = 5;
+    private static volatile long baseOpenMillis = 5_000;
+    private static volatile long maxOpenMillis = 300_000;
+    private static volatile int halfOpenProbes = 3;
+    /**
+     * 任一熔断器进入或离开CLOSED时递增，服务发现据此判断是否需要重新计算候选实例
+     */
+    private static final AtomicLong version = new AtomicLong();
+    /**
+     * 当前线程刚占用的探测名额，由服务发现占用、随后在同一线程上登记请求时取走，见takeProbe()
+     */
+    private static final ThreadLocal<Probe> grantedProbe = new ThreadLocal<>();
+
+    private static final class Probe {
+        private final CircuitBreaker breaker;
+        private final long epoch;
+
+        private Probe(CircuitBreaker breaker, long epoch) {
+            this.breaker = breaker;
+            this.epoch = epoch;
+        }
+    }
+
+    /**
+     * 日志中显示的服务端地址
+     */
+    private final String name;
+    private volatile State state = State.CLOSED;
+    private volatile long openUntilMillis;
+    /**
+     * 以下状态在本对象的锁内访问
+     */
+    private final long[] bucketEpochs = new long[BUCKETS];
+    private final int[] bucketTotals = new int[BUCKETS];
+    private final int[] bucketFailures = new int[BUCKETS];
+    private int consecutive;
+    private int openCount;
+    private int probesInFlight;
+    private int probeSuccesses;
+    /**
+     * 每次进入半开时递增，探测名额属于占用它时的那一轮半开，上一轮的探测迟到的结果不计入本轮
+     */
+    private long halfOpenEpoch;
+
+    CircuitBreaker(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @description 设置按失败率熔断的条件
+     * @param percent 失败率阈值(1-100), minimum 窗口内请求数不少于该值才判断失败率, window 滑动窗口长度(毫秒)
+     * @return [void]
+     */
+    public static void setFailureRateThreshold(int percent, int minimum, long window) {
+        if (percent < 1 || percent > 100 || minimum < 1 || window < BUCKETS) {
+            throw new IllegalArgumentException("percent: " + percent + ", minimum: " + minimum + ", window: " + window);
+        }
+        failureRatePercent = percent;
+        minimumRequests = minimum;
+        windowMillis = window;
+    }
+
+    /**
+     * @description 设置连续失败摘除的阈值和熔断时间，第n次熔断的时间为base * 2^(n-1)，不超过max
+     * @param failures 连续失败次数，小于等于0表示关闭, base 首次熔断时间(毫秒), max 熔断时间上限(毫秒)
+     * @return [void]
+     */
+    public static void setOutlierEjection(int failures, long base, long max) {
+        if (base < 1 || max < base) {
+            throw new IllegalArgumentException("base: " + base + ", max: " + max);
+        }
+        consecutiveFailures = failures;
+        baseOpenMillis = base;
+        maxOpenMillis = max;
+    }
+
+    /**
+     * @description 设置半开状态下同时放行的探测请求数，也是恢复所需的连续成功次数
+     * @param probes
+     * @return [void]
+     */
+    public static void setHalfOpenProbes(int probes) {
+        if (probes < 1) {
+            throw new IllegalArgumentException("probes: " + probes);
+        }
+        halfOpenProbes = probes;
+    }
+
+    /**
+     * @description 熔断状态的版本号，任一服务端熔断或恢复时变化
+     * @return [long]
+     */
+    public static long version() {
+        return version.get();
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @description 是否正常接收请求，只读一个volatile字段，供服务发现在每次查找时判断
+     * @return [boolean]
+     */
+    public boolean isClosed() {
+        return state == State.CLOSED;
+    }
+
+    /**
+     * @description 尝试占用一个探测名额：熔断时间已到时转为半开，名额未满时返回true，
+     * 调用方应把本次请求发往该服务端作为探测。名额记在当前线程上，由随后登记的请求通过EndpointStats.begin()取走
+     * @return [boolean]
+     */
+    public boolean tryAcquireProbe() {
+        State current = state;
+        if (current == State.CLOSED || (current == State.OPEN && System.currentTimeMillis() < openUntilMillis)) {
+            return false;
+        }
+        synchronized (this) {
+            if (state == State.OPEN) {
+                if (System.currentTimeMillis() < openUntilMillis) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                halfOpenEpoch++;
+                probesInFlight = 0;
+                probeSuccesses = 0;
+            }
+            if (state != State.HALF_OPEN || probesInFlight >= halfOpenProbes) {
+                return false;
+            }
+            probesInFlight++;
+            grantedProbe.set(new Probe(this, halfOpenEpoch));
+            return true;
+        }
+    }
+
+    /**
+     * @description 取走当前线程在本熔断器上占用的探测名额
+     * @return [long] 名额所属的半开轮次，当前线程没有占用本熔断器的名额时为0
+     */
+    long takeProbe() {
+        Probe probe = grantedProbe.get();
+        if (probe == null || probe.breaker != this) {
+            return 0;
+        }
+        grantedProbe.remove();
+        return probe.epoch;
+    }
+
+    /**
+     * @description 记录一次调用结果
+     * @param success 是否收到了服务端的响应, probe 请求占用的探测名额所属的半开轮次，不是探测请求时为0
+     * @return [void]
+     */
+    synchronized void record(boolean success, long probe) {
+        switch (state) {
+            case CLOSED:
+                recordClosed(success);
+                break;
+            case HALF_OPEN:
+                if (probe == 0 || probe != halfOpenEpoch) {
+                    //不是本轮的探测请求，与熔断时一样忽略
+                    break;
+                }
+                probesInFlight--;
+                if (!success) {
+                    open();
+                } else if (++probeSuccesses >= halfOpenProbes) {
+                    close();
+                }
+                break;
+            default:
+                //熔断前发出的请求迟到的结果，不影响状态
+        }
+    }
+
+    /**
+     * @description 请求被主动取消(如对冲中落败)时归还它占用的探测名额，不计入探测结果；
+     * 否则被取消的探测永远占着名额，名额用完后该服务端一直停留在半开状态
+     * @param probe 请求占用的探测名额所属的半开轮次，不是探测请求时为0
+     * @return [void]
+     */
+    synchronized void releaseProbe(long probe) {
+        if (state == State.HALF_OPEN && probe != 0 && probe == halfOpenEpoch) {
+            probesInFlight--;
+        }
+    }
+
+    private void recordClosed(boolean success) {
+        long now = System.currentTimeMillis();
+        long bucketMillis = windowMillis / BUCKETS;
+        long epoch = now / bucketMillis;
+        int index = (int) (epoch % BUCKETS);
+        if (bucketEpochs[index] != epoch) {
+            bucketEpochs[index] = epoch;
+            bucketTotals[index] = 0;
+            bucketFailures[index] = 0;
+        }
+        bucketTotals[index]++;
+        if (success) {
+            consecutive = 0;
+            return;
+        }
+        bucketFailures[index]++;
+        consecutive++;
+        int threshold = consecutiveFailures;
+        if (threshold > 0 && consecutive >= threshold) {
+            open();
+            return;
+        }
+        int total = 0;
+        int failures = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (epoch - bucketEpochs[i] < BUCKETS) {
+                total += bucketTotals[i];
+                failures += bucketFailures[i];
+            }
+        }
+        if (total >= minimumRequests && failures * 100 >= total * failureRatePercent) {
+            open();
+        }
+    }
+
+    private void open() {
+        boolean wasClosed = state == State.CLOSED;
+        openCount++;
+        long openMillis = baseOpenMillis << Math.min(openCount - 1, 30);
+        openUntilMillis = System.currentTimeMillis() + Math.min(openMillis < 0 ? Long.MAX_VALUE : openMillis, maxOpenMillis);
+        state = State.OPEN;
+        consecutive = 0;
+        if (wasClosed) {
+            version.incrementAndGet();
+        }
+        logger.warn("服务端{}已熔断，{}ms后开始探测", name, openUntilMillis - System.currentTimeMillis());
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        openCount = 0;
+        consecutive = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            bucketEpochs[i] = 0;
+            bucketTotals[i] = 0;
+            bucketFailures[i] = 0;
+        }
+        version.incrementAndGet();
+        logger.info("服务端{}探测成功，恢复接收请求", name);
+    }
+}
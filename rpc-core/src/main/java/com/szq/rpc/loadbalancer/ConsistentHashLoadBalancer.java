@@ -0,0 +1,156 @@
+package com.szq.rpc.loadbalancer;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.szq.rpc.entity.RpcRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @author Ashur
+ * @description 一致性哈希：按请求的某个参数选择实例，参数相同的请求总是落到同一个服务端，服务端本地缓存的命中率更高；
+ * 实例增减时只有哈希环上相邻一段的参数改变归属
+ * 每个实例在环上有若干虚拟节点(权重最大的实例为virtualNodes个，其余按权重比例)，使参数分布均匀；
+ * 哈希环在实例列表变化时构建为有序数组，选择时二分查找，不加锁。
+ * 参数以toString()计算哈希，没有参数或参数为null时随机选择
+ */
+public class ConsistentHashLoadBalancer implements LoadBalancer {
+
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    /**
+     * 用于计算哈希的参数下标
+     */
+    private final int argumentIndex;
+    private final InstanceStateCache<Ring> rings;
+
+    public ConsistentHashLoadBalancer() {
+        this(0, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * @param argumentIndex 用于计算哈希的参数下标
+     * @param virtualNodes 权重最大的实例在环上的虚拟节点数
+     */
+    public ConsistentHashLoadBalancer(int argumentIndex, int virtualNodes) {
+        if (argumentIndex < 0 || virtualNodes < 1) {
+            throw new IllegalArgumentException("argumentIndex: " + argumentIndex + ", virtualNodes: " + virtualNodes);
+        }
+        this.argumentIndex = argumentIndex;
+        this.rings = new InstanceStateCache<>(instances -> new Ring(instances, virtualNodes));
+    }
+
+    private static final class Ring {
+        private final long[] points;
+        private final int[] owners;
+
+        private Ring(List<Instance> instances, int virtualNodes) {
+            int[] weights = Weights.of(instances);
+            int maxWeight = 0;
+            for (int weight : weights) {
+                maxWeight = Math.max(maxWeight, weight);
+            }
+            int[] replicas = new int[weights.length];
+            int total = 0;
+            for (int i = 0; i < weights.length; i++) {
+                replicas[i] = weights[i] == 0 ? 0 : (int) Math.max(1, (long) virtualNodes * weights[i] / maxWeight);
+                total += replicas[i];
+            }
+            //虚拟节点的位置取'ip:port#序号'的MD5前8字节，所有客户端构建出的环相同
+            long[] hashes = new long[total];
+            int[] indexes = new int[total];
+            int n = 0;
+            MessageDigest md5 = md5();
+            for (int i = 0; i < replicas.length; i++) {
+                Instance instance = instances.get(i);
+                String node = instance.getIp() + ":" + instance.getPort() + "#";
+                for (int r = 0; r < replicas[i]; r++) {
+                    byte[] digest = md5.digest((node + r).getBytes(StandardCharsets.UTF_8));
+                    hashes[n] = toLong(digest);
+                    indexes[n] = i;
+                    n++;
+                }
+            }
+            Integer[] order = new Integer[total];
+            for (int i = 0; i < total; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+            this.points = new long[total];
+            this.owners = new int[total];
+            for (int i = 0; i < total; i++) {
+                points[i] = hashes[order[i]];
+                owners[i] = indexes[order[i]];
+            }
+        }
+
+        /**
+         * 顺时针找到第一个不小于hash的虚拟节点，超过最大值时回到环的起点
+         */
+        private int locate(long hash) {
+            int i = Arrays.binarySearch(points, hash);
+            if (i < 0) {
+                i = -i - 1;
+            }
+            return owners[i == points.length ? 0 : i];
+        }
+    }
+
+    @Override
+    public Instance select(List<Instance> instances) {
+        return instances.get(ThreadLocalRandom.current().nextInt(instances.size()));
+    }
+
+    @Override
+    public Instance select(List<Instance> instances, RpcRequest rpcRequest) {
+        Object[] parameters = rpcRequest == null ? null : rpcRequest.getParameters();
+        if (parameters == null || parameters.length <= argumentIndex || parameters[argumentIndex] == null) {
+            return select(instances);
+        }
+        Ring current = rings.get(instances, rpcRequest);
+        if (current.points.length == 0) {
+            return select(instances);
+        }
+        return instances.get(current.locate(hash(parameters[argumentIndex].toString())));
+    }
+
+    /**
+     * @description 参数的64位哈希：FNV-1a后再做一次MurmurHash3的fmix64混合，使相近的字符串也分散到整个环上；
+     * 只依赖字符内容，不同客户端进程对同一参数算出的值相同
+     * @param key
+     * @return [long]
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static long toLong(byte[] digest) {
+        long h = 0;
+        for (int i = 0; i < 8; i++) {
+            h = (h << 8) | (digest[i] & 0xFF);
+        }
+        return h;
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5不可用", e);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.szq.rpc.loadbalancer;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Ashur
+ * @description 客户端对每个服务端地址的调用统计：在途(已发出未完成)的请求数、响应延迟的指数加权移动平均(EWMA)以及熔断器，
+ * 供LeastActiveLoadBalancer、P2cEwmaLoadBalancer等负载均衡使用，也是调用结果反馈给负载均衡的唯一通道。
+ * 以InetSocketAddress为键(哈希值由IP和端口算出，开销很小)，同一进程内的所有客户端共用；
+ * 请求登记到UnprocessedRequests时调用begin()，收到响应、超时或失败时由UnprocessedRequests调用end()，主动取消时调用cancel()
+ */
+public final class EndpointStats {
+
+    /**
+     * 延迟EWMA的衰减时间常数：距上一次观测经过这么长时间，旧值的权重降为1/e
+     */
+    private static final long DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+    /**
+     * 失败或超时的调用按不少于该值的延迟计入，避免快速失败的服务端看起来"很快"
+     */
+    private static final long FAILURE_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final Map<InetSocketAddress, EndpointStats> stats = new ConcurrentHashMap<>();
+
+    private final InetSocketAddress address;
+    private final AtomicInteger active = new AtomicInteger();
+    private final CircuitBreaker circuitBreaker;
+    /**
+     * 延迟EWMA(纳秒)及其更新时间，写入在本对象的锁内，读取不加锁
+     */
+    private volatile double latencyEwma;
+    private volatile long lastUpdateNanos = System.nanoTime();
+
+    private EndpointStats(InetSocketAddress address) {
+        this.address = address;
+        this.circuitBreaker = new CircuitBreaker(address.toString());
+    }
+
+    /**
+     * @description 取地址对应的统计，不存在时创建
+     * @param address
+     * @return [com.szq.rpc.loadbalancer.EndpointStats]
+     */
+    public static EndpointStats of(InetSocketAddress address) {
+        //Java 8的computeIfAbsent()命中时也会加锁，先get()
+        EndpointStats endpointStats = stats.get(address);
+        return endpointStats != null ? endpointStats : stats.computeIfAbsent(address, EndpointStats::new);
+    }
+
+    /**
+     * @description 一次调用开始，在途数加一；在查找服务端的同一线程上调用，取走查找时为本次调用占用的探测名额
+     * @return [long] 本次调用持有的探测名额，不是探测请求时为0，结束时原样传给end()或cancel()
+     */
+    public long begin() {
+        active.incrementAndGet();
+        return circuitBreaker.takeProbe();
+    }
+
+    /**
+     * @description 一次调用结束，在途数减一，把延迟计入EWMA，把结果计入熔断器
+     * @param latencyNanos 从登记请求到结束的时间
+     * @param success 是否收到了服务端的响应；超时、连接失败等为false
+     * @param probe begin()返回的探测名额
+     * @return [void]
+     */
+    public void end(long latencyNanos, boolean success, long probe) {
+        active.decrementAndGet();
+        observe(success ? latencyNanos : Math.max(latencyNanos, FAILURE_PENALTY_NANOS));
+        circuitBreaker.record(success, probe);
+    }
+
+    /**
+     * @description 请求被主动取消(如对冲请求中落败的一方)，减少在途数并归还它持有的探测名额，延迟和结果都不计入
+     * @param probe begin()返回的探测名额
+     * @return [void]
+     */
+    public void cancel(long probe) {
+        active.decrementAndGet();
+        circuitBreaker.releaseProbe(probe);
+    }
+
+    /**
+     * 峰值敏感的EWMA：比当前值慢的观测直接取代当前值，服务端一变慢(如GC停顿)立即体现；
+     * 比当前值快的观测按距上次更新的时间加权，逐渐拉低
+     */
+    private synchronized void observe(long latencyNanos) {
+        long now = System.nanoTime();
+        double ewma = latencyEwma;
+        if (latencyNanos > ewma) {
+            latencyEwma = latencyNanos;
+        } else {
+            double w = Math.exp(-(now - lastUpdateNanos) / (double) DECAY_NANOS);
+            latencyEwma = ewma * w + latencyNanos * (1 - w);
+        }
+        lastUpdateNanos = now;
+    }
+
+    public int getActive() {
+        return active.get();
+    }
+
+    /**
+     * @description 当前的延迟估计(纳秒)。读取时按距上次观测的时间衰减，
+     * 因变慢而不再被选中的服务端会随时间恢复到可被选中，得到重新观测的机会；没有观测时为0
+     * @return [double]
+     */
+    public double getLatencyEwma() {
+        double ewma = latencyEwma;
+        if (ewma == 0) {
+            return 0;
+        }
+        return ewma * Math.exp(-(System.nanoTime() - lastUpdateNanos) / (double) DECAY_NANOS);
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+}
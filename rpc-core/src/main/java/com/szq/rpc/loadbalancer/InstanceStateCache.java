@@ -0,0 +1,50 @@
+package com.szq.rpc.loadbalancer;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.szq.rpc.entity.RpcRequest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * @author Ashur
+ * @description 负载均衡器由实例列表算出的状态(权重表、哈希环等)的缓存，按服务名分别保存，实例列表换成新快照时重算
+ * 客户端中所有服务共用同一个负载均衡器，只缓存一份时交替调用不同服务会让每次选择都重算；
+ * 没有请求信息(按服务名查找)的调用共用一个槽位
+ */
+final class InstanceStateCache<T> {
+
+    private final Function<List<Instance>, T> factory;
+    private final Map<String, Entry<T>> entries = new ConcurrentHashMap<>();
+
+    private static final class Entry<T> {
+        private final List<Instance> instances;
+        private final T state;
+
+        private Entry(List<Instance> instances, T state) {
+            this.instances = instances;
+            this.state = state;
+        }
+    }
+
+    InstanceStateCache(Function<List<Instance>, T> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * @description 取实例列表对应的状态，列表与缓存的不是同一个对象时重算；并发线程各自算出的结果相同，无需加锁
+     * @param instances, rpcRequest
+     * @return [T]
+     */
+    T get(List<Instance> instances, RpcRequest rpcRequest) {
+        String key = rpcRequest == null || rpcRequest.getInterfaceName() == null ? "" : rpcRequest.getInterfaceName();
+        Entry<T> entry = entries.get(key);
+        if (entry == null || entry.instances != instances) {
+            entry = new Entry<>(instances, factory.apply(instances));
+            entries.put(key, entry);
+        }
+        return entry.state;
+    }
+}
@@ -0,0 +1,65 @@
+package com.szq.rpc.loadbalancer;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.szq.rpc.entity.RpcRequest;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @author Ashur
+ * @description 最少活跃调用：选择本客户端在途请求数最少的实例，处理得快的服务端自然分到更多请求
+ * 在途请求数来自EndpointStats；并列最少的实例之间按权重随机，避免总是选中列表中靠前的实例
+ */
+public class LeastActiveLoadBalancer implements LoadBalancer {
+
+    private final InstanceStateCache<Endpoints> endpoints = new InstanceStateCache<>(Endpoints::new);
+
+    private static final class Endpoints {
+        private final EndpointStats[] stats;
+        private final int[] weights;
+
+        private Endpoints(List<Instance> instances) {
+            this.stats = new EndpointStats[instances.size()];
+            for (int i = 0; i < stats.length; i++) {
+                Instance instance = instances.get(i);
+                stats[i] = EndpointStats.of(new InetSocketAddress(instance.getIp(), instance.getPort()));
+            }
+            this.weights = Weights.of(instances);
+        }
+    }
+
+    @Override
+    public Instance select(List<Instance> instances) {
+        return select(instances, null);
+    }
+
+    @Override
+    public Instance select(List<Instance> instances, RpcRequest rpcRequest) {
+        Endpoints current = endpoints.get(instances, rpcRequest);
+        int[] weights = current.weights;
+        int leastActive = Integer.MAX_VALUE;
+        //并列最少的实例中按权重蓄水池抽样：第k个候选以weight/累计权重的概率替换当前选择
+        int chosen = 0;
+        int weightSum = 0;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < weights.length; i++) {
+            if (weights[i] == 0) {
+                continue;
+            }
+            int active = current.stats[i].getActive();
+            if (active < leastActive) {
+                leastActive = active;
+                chosen = i;
+                weightSum = weights[i];
+            } else if (active == leastActive) {
+                weightSum += weights[i];
+                if (random.nextInt(weightSum) < weights[i]) {
+                    chosen = i;
+                }
+            }
+        }
+        return instances.get(chosen);
+    }
+}
@@ -1,12 +1,16 @@
 package com.szq.rpc.loadbalancer;
 
 import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.szq.rpc.entity.RpcRequest;
 
 import java.util.List;
 
 /**
  * @author Ashur
  * @description 负载均衡接口
+ * 服务发现传入的实例列表是不可变快照，实例变化时才会换成新的列表对象，
+ * 实现类可以按列表的对象身份缓存由它算出的权重、哈希环等状态，不必每次调用都重新计算；
+ * 同一个负载均衡器服务于所有服务，缓存需按服务区分(见InstanceStateCache)
  */
 public interface LoadBalancer {
     /**
@@ -15,4 +19,13 @@ public interface LoadBalancer {
      * @description 从一系列Instance中选择一个
      */
     Instance select(List<Instance> instances);
+
+    /**
+     * @description 结合本次请求选择实例，需要按请求参数路由的实现(如一致性哈希)覆盖此方法
+     * @param instances, rpcRequest
+     * @return [com.alibaba.nacos.api.naming.pojo.Instance]
+     */
+    default Instance select(List<Instance> instances, RpcRequest rpcRequest) {
+        return select(instances);
+    }
 }
@@ -0,0 +1,74 @@
+package com.szq.rpc.loadbalancer;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.szq.rpc.entity.RpcRequest;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @author Ashur
+ * @description 两次随机选择(power of two choices) + 延迟EWMA：每次随机取两个实例，选择负载更低的一个
+ * 负载 = 延迟EWMA × (在途请求数 + 1) / 权重，数据来自EndpointStats，由UnprocessedRequests在每个请求结束时反馈。
+ * 变慢或GC停顿的服务端延迟立即升高，之后几乎不再被选中；只比较两个实例，不会像"总选最优"那样让所有客户端同时涌向同一个实例
+ */
+public class P2cEwmaLoadBalancer implements LoadBalancer {
+
+    /**
+     * 没有延迟观测但已有在途请求的实例按该负载计算(纳秒)，避免新实例在首个响应返回之前接收全部流量
+     */
+    private static final double UNKNOWN_LATENCY_PENALTY = 1e9;
+
+    private final InstanceStateCache<Endpoints> endpoints = new InstanceStateCache<>(Endpoints::new);
+
+    private static final class Endpoints {
+        private final EndpointStats[] stats;
+        private final int[] weights;
+
+        private Endpoints(List<Instance> instances) {
+            this.stats = new EndpointStats[instances.size()];
+            for (int i = 0; i < stats.length; i++) {
+                Instance instance = instances.get(i);
+                stats[i] = EndpointStats.of(new InetSocketAddress(instance.getIp(), instance.getPort()));
+            }
+            this.weights = Weights.of(instances);
+        }
+    }
+
+    @Override
+    public Instance select(List<Instance> instances) {
+        return select(instances, null);
+    }
+
+    @Override
+    public Instance select(List<Instance> instances, RpcRequest rpcRequest) {
+        int n = instances.size();
+        if (n == 1) {
+            return instances.get(0);
+        }
+        Endpoints current = endpoints.get(instances, rpcRequest);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int a = random.nextInt(n);
+        //第二个下标从其余n-1个中选，保证两者不同
+        int b = random.nextInt(n - 1);
+        if (b >= a) {
+            b++;
+        }
+        return instances.get(cost(current, a) <= cost(current, b) ? a : b);
+    }
+
+    private static double cost(Endpoints endpoints, int i) {
+        int weight = endpoints.weights[i];
+        if (weight == 0) {
+            return Double.MAX_VALUE;
+        }
+        EndpointStats stats = endpoints.stats[i];
+        double latency = stats.getLatencyEwma();
+        int active = stats.getActive();
+        if (latency == 0 && active > 0) {
+            latency = UNKNOWN_LATENCY_PENALTY;
+        }
+        return latency * (active + 1) / weight;
+    }
+}
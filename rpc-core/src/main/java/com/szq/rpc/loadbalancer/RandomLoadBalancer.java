@@ -3,15 +3,16 @@ package com.szq.rpc.loadbalancer;
 import com.alibaba.nacos.api.naming.pojo.Instance;
 
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * @author Ashur
- * @description 随机选择一个
+ * @description 随机选择一个，不考虑权重；按权重随机请使用WeightedRandomLoadBalancer
  */
 public class RandomLoadBalancer implements LoadBalancer{
     @Override
     public Instance select(List<Instance> instances) {
-        return instances.get(new Random().nextInt(instances.size()));
+        //ThreadLocalRandom没有共享的种子，多线程下不竞争，也不必每次创建Random
+        return instances.get(ThreadLocalRandom.current().nextInt(instances.size()));
     }
 }
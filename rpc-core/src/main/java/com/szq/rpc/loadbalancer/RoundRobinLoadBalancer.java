@@ -3,21 +3,20 @@ package com.szq.rpc.loadbalancer;
 import com.alibaba.nacos.api.naming.pojo.Instance;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Ashur
- * @description 轮转算法,按顺序来
+ * @description 轮转算法,按顺序来，不考虑权重；按权重轮转请使用SmoothWeightedRoundRobinLoadBalancer
  */
 public class RoundRobinLoadBalancer implements LoadBalancer{
     /**
-     * index表示当前选到了第几个服务器，并且每次选择后都会自增一
+     * index表示当前选到了第几个服务器，并且每次选择后都会自增一；多线程共享，使用原子变量
      */
-    private int index = 0;
+    private final AtomicInteger index = new AtomicInteger();
     @Override
     public Instance select(List<Instance> instances) {
-        if (index >= instances.size()){
-            index %= instances.size();
-        }
-        return instances.get(index++);
+        //溢出为负数后取模仍为负，屏蔽符号位
+        return instances.get((index.getAndIncrement() & Integer.MAX_VALUE) % instances.size());
     }
 }
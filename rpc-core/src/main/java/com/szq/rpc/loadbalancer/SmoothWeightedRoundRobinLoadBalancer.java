@@ -0,0 +1,73 @@
+package com.szq.rpc.loadbalancer;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.szq.rpc.entity.RpcRequest;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Ashur
+ * @description 平滑加权轮询(与Nginx的算法相同)：权重为5、1、1的三个实例按a a b a c a a的顺序被选中，而不是a a a a a b c
+ * 原算法每次选择都要修改所有实例的当前权重，多线程下需要加锁；这里在实例列表变化时一次算出一整轮的选择顺序，
+ * 之后每次选择只对一个原子计数器自增并查表，不加锁
+ */
+public class SmoothWeightedRoundRobinLoadBalancer implements LoadBalancer {
+
+    /**
+     * 一轮最多包含的选择次数，权重之和超过它时按比例缩小权重
+     */
+    private static final int MAX_CYCLE = 1 << 16;
+
+    private final AtomicInteger index = new AtomicInteger();
+    /**
+     * 每个服务一轮的选择顺序，实例列表换成新快照时重算
+     */
+    private final InstanceStateCache<int[]> sequences = new InstanceStateCache<>(instances -> sequence(Weights.of(instances)));
+
+    @Override
+    public Instance select(List<Instance> instances) {
+        return select(instances, null);
+    }
+
+    @Override
+    public Instance select(List<Instance> instances, RpcRequest rpcRequest) {
+        int[] sequence = sequences.get(instances, rpcRequest);
+        return instances.get(sequence[(index.getAndIncrement() & Integer.MAX_VALUE) % sequence.length]);
+    }
+
+    /**
+     * @description 按平滑加权轮询算出一整轮(长度为权重之和)的选择顺序
+     * @param weights
+     * @return [int[]] 每次选择的实例下标
+     */
+    static int[] sequence(int[] weights) {
+        long total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        if (total > MAX_CYCLE) {
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = weights[i] == 0 ? 0 : (int) Math.max(1, (long) weights[i] * MAX_CYCLE / total);
+            }
+            total = 0;
+            for (int weight : weights) {
+                total += weight;
+            }
+        }
+        int[] sequence = new int[(int) total];
+        long[] currentWeights = new long[weights.length];
+        for (int step = 0; step < sequence.length; step++) {
+            int best = -1;
+            for (int i = 0; i < weights.length; i++) {
+                currentWeights[i] += weights[i];
+                if (weights[i] > 0 && (best < 0 || currentWeights[i] > currentWeights[best])) {
+                    best = i;
+                }
+            }
+            currentWeights[best] -= total;
+            sequence[step] = best;
+        }
+        return sequence;
+    }
+}
@@ -0,0 +1,64 @@
+package com.szq.rpc.loadbalancer;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.szq.rpc.entity.RpcRequest;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @author Ashur
+ * @description 按权重随机选择：实例被选中的概率与Instance.getWeight()成正比
+ * 权重的前缀和在实例列表变化时算好，每次选择只生成一个随机数并二分查找
+ */
+public class WeightedRandomLoadBalancer implements LoadBalancer {
+
+    private final InstanceStateCache<Prefix> prefixes = new InstanceStateCache<>(Prefix::new);
+
+    private static final class Prefix {
+        /**
+         * 权重全部相同时为null，直接均匀随机
+         */
+        private final int[] cumulative;
+
+        private Prefix(List<Instance> instances) {
+            int[] weights = Weights.of(instances);
+            if (Weights.allEqual(weights)) {
+                this.cumulative = null;
+                return;
+            }
+            this.cumulative = new int[weights.length];
+            int sum = 0;
+            for (int i = 0; i < weights.length; i++) {
+                sum += weights[i];
+                cumulative[i] = sum;
+            }
+        }
+    }
+
+    @Override
+    public Instance select(List<Instance> instances) {
+        return select(instances, null);
+    }
+
+    @Override
+    public Instance select(List<Instance> instances, RpcRequest rpcRequest) {
+        int[] cumulative = prefixes.get(instances, rpcRequest).cumulative;
+        if (cumulative == null) {
+            return instances.get(ThreadLocalRandom.current().nextInt(instances.size()));
+        }
+        int offset = ThreadLocalRandom.current().nextInt(cumulative[cumulative.length - 1]);
+        //找到第一个前缀和大于offset的实例；权重为0的实例与前一个实例前缀和相同，不会被选中
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] > offset) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return instances.get(low);
+    }
+}
@@ -0,0 +1,56 @@
+package com.szq.rpc.loadbalancer;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+
+import java.util.List;
+
+/**
+ * @author Ashur
+ * @description 把Nacos实例的double权重换算为整数权重
+ * 权重乘以100后取整(保留两位小数的精度)，再除以所有权重的最大公约数，默认权重1.0的实例换算后为1。
+ * 权重小于等于0的实例不参与选择；全部小于等于0时按等权重处理
+ */
+final class Weights {
+
+    private Weights() {
+    }
+
+    static int[] of(List<Instance> instances) {
+        int n = instances.size();
+        int[] weights = new int[n];
+        int gcd = 0;
+        for (int i = 0; i < n; i++) {
+            double weight = instances.get(i).getWeight();
+            weights[i] = weight > 0 ? (int) Math.max(1, Math.min(Math.round(weight * 100), Integer.MAX_VALUE / n)) : 0;
+            gcd = gcd(gcd, weights[i]);
+        }
+        if (gcd == 0) {
+            for (int i = 0; i < n; i++) {
+                weights[i] = 1;
+            }
+            return weights;
+        }
+        for (int i = 0; i < n; i++) {
+            weights[i] /= gcd;
+        }
+        return weights;
+    }
+
+    static boolean allEqual(int[] weights) {
+        for (int i = 1; i < weights.length; i++) {
+            if (weights[i] != weights[0]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
@@ -0,0 +1,59 @@
+package com.szq.rpc.provider;
+
+import com.szq.rpc.transport.MethodDescriptor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+/**
+ * @author Ashur
+ * @description 预先绑定到服务实例上的方法调用器
+ * 注册服务时解析一次，MethodHandle已绑定服务对象并展开为(Object[])Object的统一形式，
+ * 每次调用不再需要getMethod()查找、访问检查和Method.invoke()的参数数组拷贝
+ */
+public final class MethodInvoker {
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final String methodName;
+    private final int methodId;
+    private final MethodHandle handle;
+    /**
+     * 声明的返回值类型是否为流式调用，与客户端MethodDescriptor的判断规则一致
+     */
+    private final boolean streaming;
+
+    MethodInvoker(Object service, Method method, int methodId) throws IllegalAccessException {
+        this.methodName = method.getName();
+        this.methodId = methodId;
+        this.streaming = MethodDescriptor.isStreaming(method.getReturnType());
+        //实现类本身可能不是public的，这里关闭访问检查后再转换为MethodHandle
+        method.setAccessible(true);
+        this.handle = MethodHandles.lookup().unreflect(method)
+                .bindTo(service)
+                .asSpreader(Object[].class, method.getParameterCount())
+                .asType(MethodType.methodType(Object.class, Object[].class));
+    }
+
+    /**
+     * @description 调用服务方法，服务方法抛出的异常原样抛出
+     * @param args 参数，无参方法可以为null
+     * @return [java.lang.Object] 返回值，void方法返回null
+     */
+    public Object invoke(Object[] args) throws Throwable {
+        return handle.invokeExact(args == null ? NO_ARGS : args);
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public int getMethodId() {
+        return methodId;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+}
@@ -20,4 +20,12 @@ public interface ServiceProvider {
      * @return [java.lang.Object] 服务实体
      */
     Object getServiceProvider(String serviceName);
+
+    /**
+     * @description 根据服务名和方法号获取预先解析好的方法调用器
+     * @param serviceName 服务名称
+     * @param methodId 方法号，见MethodIdUtil
+     * @return [com.szq.rpc.provider.MethodInvoker] 服务中没有该方法时返回null
+     */
+    MethodInvoker getMethodInvoker(String serviceName, int methodId);
 }
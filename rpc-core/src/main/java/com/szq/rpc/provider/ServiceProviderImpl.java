@@ -2,9 +2,18 @@ package com.szq.rpc.provider;
 
 import com.szq.rpc.enumertaion.RpcError;
 import com.szq.rpc.exception.RpcException;
+import com.szq.rpc.transport.MethodDescriptor;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Logger;
 
+import com.szq.rpc.util.MethodIdUtil;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -23,6 +32,10 @@ public class ServiceProviderImpl implements ServiceProvider {
      * * 用来存放服务名称(即接口名）
      */
     private static final Set<String> registeredService = ConcurrentHashMap.newKeySet();
+    /**
+     * key = 服务名称, value = 该服务的方法表(方法号 -> 方法调用器)，注册后只读
+     */
+    private static final Map<String, IntObjectMap<MethodInvoker>> methodTables = new ConcurrentHashMap<>();
     /**
      * @description 保存服务到本地服务注册表
      * @param service, serviceClass 服务的实现类对象，服务类（接口）
@@ -35,6 +48,7 @@ public class ServiceProviderImpl implements ServiceProvider {
         }
         registeredService.add(serviceName);
         serviceMap.put(serviceName, service);
+        methodTables.put(serviceName, buildMethodTable(service, serviceName));
         logger.info("向接口：{} 注册服务：{}", service.getClass().getInterfaces(),serviceName);
     }
 
@@ -46,6 +60,70 @@ public class ServiceProviderImpl implements ServiceProvider {
         }
         return service;
     }
+    @Override
+    public MethodInvoker getMethodInvoker(String serviceName, int methodId) {
+        IntObjectMap<MethodInvoker> methodTable = methodTables.get(serviceName);
+        if(methodTable == null){
+            throw new RpcException(RpcError.SERVICE_NOT_FOUND);
+        }
+        return methodTable.get(methodId);
+    }
+
+    /**
+     * @description 注册时一次性解析服务的所有公有方法，按方法号建立方法表
+     * 方法号冲突的方法都不放入表中，避免调用到错误的方法，调用时会得到“未找到指定方法”。
+     * 方法号不含返回值类型，实现类缩小返回值类型(如接口的Number count()实现为Integer count())时，
+     * 编译器生成的桥接方法与实际方法方法号相同，不算冲突：先登记非桥接方法，桥接方法只在其方法号空缺时登记
+     * (如泛型接口参数类型擦除后的put(Object))，两者调用的是同一段实现。
+     * 接口声明返回Iterator而实现类缩小为其子类型时，客户端按流式调用，此时改用声明返回Iterator的桥接方法登记
+     * @param service, serviceName
+     * @return [io.netty.util.collection.IntObjectMap<com.szq.rpc.provider.MethodInvoker>]
+     */
+    private static IntObjectMap<MethodInvoker> buildMethodTable(Object service, String serviceName){
+        IntObjectMap<MethodInvoker> methodTable = new IntObjectHashMap<>();
+        Set<Integer> conflicts = new HashSet<>();
+        List<Method> bridges = new ArrayList<>();
+        for (Method method : service.getClass().getMethods()) {
+            if (method.getDeclaringClass() == Object.class){
+                continue;
+            }
+            if (method.isBridge() || method.isSynthetic()){
+                bridges.add(method);
+                continue;
+            }
+            int methodId = MethodIdUtil.methodId(method);
+            if (conflicts.contains(methodId)){
+                continue;
+            }
+            MethodInvoker existing = methodTable.get(methodId);
+            if (existing != null){
+                logger.error("服务：{} 的方法 {} 与 {} 方法号冲突，均不可通过方法号调用", serviceName, method, existing.getMethodName());
+                methodTable.remove(methodId);
+                conflicts.add(methodId);
+                continue;
+            }
+            register(methodTable, service, serviceName, method, methodId);
+        }
+        for (Method bridge : bridges) {
+            int methodId = MethodIdUtil.methodId(bridge);
+            if (conflicts.contains(methodId)){
+                continue;
+            }
+            MethodInvoker existing = methodTable.get(methodId);
+            if (existing == null || (!existing.isStreaming() && MethodDescriptor.isStreaming(bridge.getReturnType()))){
+                register(methodTable, service, serviceName, bridge, methodId);
+            }
+        }
+        return methodTable;
+    }
+
+    private static void register(IntObjectMap<MethodInvoker> methodTable, Object service, String serviceName, Method method, int methodId){
+        try {
+            methodTable.put(methodId, new MethodInvoker(service, method, methodId));
+        }catch (IllegalAccessException | RuntimeException e){
+            logger.error("解析服务：{} 的方法 {} 时有错误发生", serviceName, method, e);
+        }
+    }
 //在注册服务时，默认采用接口名称作为服务名，例如某个对象 A 实现了接口 X 和 Y，那么将 A 注册进去后，会有两个服务名 X 和 Y 对应于 A 对象。
 // 相当于创建了两个map（k,v）对象，这种处理方式的好处在于每个接口只会对应一个对象，逻辑更清晰，查找更方便。同时注意使用了ConcurrentHashMap和Synchronized来保证线程安全。
 
@@ -0,0 +1,111 @@
+package com.szq.rpc.registry;
+
+import com.alibaba.nacos.api.exception.NacosException;
+import com.alibaba.nacos.api.naming.listener.NamingEvent;
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.szq.rpc.enumertaion.RpcError;
+import com.szq.rpc.exception.RpcException;
+import com.szq.rpc.util.NacosUtil;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Ashur
+ * @description 客户端本地的服务发现缓存，进程内所有NacosServiceDiscovery共用，通过SingletonFactory获取
+ * 每个服务名第一次查找时从Nacos拉取实例列表并订阅变更，之后的查找只读本地的不可变快照，不再访问注册中心；
+ * 订阅推送丢失时由定时刷新兜底。注册中心不可达(拉取失败或抛出异常)时继续使用最后一次可用的快照，
+ * 注册中心的短暂故障不会让正在运行的调用全部失败；成功返回的空列表(服务已全部下线)则正常替换快照
+ */
+public class NacosServiceCache {
+    private static final Logger logger = LoggerFactory.getLogger(NacosServiceCache.class);
+
+    /**
+     * 定时刷新的间隔(毫秒)
+     */
+    public static final long DEFAULT_REFRESH_MILLIS = 30_000;
+
+    /**
+     * 与UnprocessedRequests一样使用静态状态，即使SingletonFactory并发创建出多个实例也共用同一份快照
+     */
+    private static final Map<String, ServiceInstances> snapshots = new ConcurrentHashMap<>();
+    /**
+     * 刷新线程为守护线程，不阻止进程退出
+     */
+    private static final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(
+            new DefaultThreadFactory("rpc-discovery-refresh", true));
+
+    static {
+        refresher.scheduleWithFixedDelay(NacosServiceCache::refreshAll, DEFAULT_REFRESH_MILLIS, DEFAULT_REFRESH_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @description 取服务的当前快照，本地没有时从注册中心拉取并订阅
+     * @param serviceName
+     * @return [com.szq.rpc.registry.ServiceInstances]
+     */
+    public ServiceInstances get(String serviceName) {
+        ServiceInstances snapshot = snapshots.get(serviceName);
+        return snapshot != null ? snapshot : load(serviceName);
+    }
+
+    /**
+     * 同一服务名只拉取、订阅一次，并发的首次查找在这里等待
+     */
+    private static synchronized ServiceInstances load(String serviceName) {
+        ServiceInstances snapshot = snapshots.get(serviceName);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        try {
+            snapshot = ServiceInstances.of(NacosUtil.getAllInstance(serviceName));
+        } catch (NacosException e) {
+            logger.error("获取服务时有错误发生", e);
+            throw new RpcException(RpcError.FAILED_TO_CONNECT_TO_SERVICE_REGISTRY, serviceName);
+        }
+        snapshots.put(serviceName, snapshot);
+        try {
+            NacosUtil.subscribe(serviceName, event -> {
+                if (event instanceof NamingEvent) {
+                    update(serviceName, ((NamingEvent) event).getInstances());
+                }
+            });
+        } catch (NacosException e) {
+            //订阅失败时只依赖定时刷新
+            logger.warn("订阅服务{}失败，改为定时刷新", serviceName, e);
+        }
+        return snapshot;
+    }
+
+    private static void refreshAll() {
+        for (String serviceName : snapshots.keySet()) {
+            try {
+                update(serviceName, NacosUtil.getAllInstance(serviceName));
+            } catch (NacosException | RuntimeException e) {
+                logger.warn("刷新服务{}失败，继续使用本地快照", serviceName, e);
+            }
+        }
+    }
+
+    /**
+     * @description 用注册中心的最新实例列表替换快照，空列表表示服务已全部下线，同样替换，之后的调用不再连接已下线的地址
+     * @param serviceName, instances
+     * @return [void]
+     */
+    private static void update(String serviceName, List<Instance> instances) {
+        if (instances == null) {
+            return;
+        }
+        if (instances.isEmpty()) {
+            logger.warn("服务{}已没有可用实例", serviceName);
+        }
+        snapshots.put(serviceName, ServiceInstances.of(instances));
+    }
+}
@@ -1,13 +1,12 @@
 package com.szq.rpc.registry;
 
-import com.alibaba.nacos.api.exception.NacosException;
-import com.alibaba.nacos.api.naming.NamingService;
 import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.szq.rpc.entity.RpcRequest;
 import com.szq.rpc.enumertaion.RpcError;
 import com.szq.rpc.exception.RpcException;
+import com.szq.rpc.factory.SingletonFactory;
 import com.szq.rpc.loadbalancer.LoadBalancer;
 import com.szq.rpc.loadbalancer.RandomLoadBalancer;
-import com.szq.rpc.util.NacosUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,6 +20,7 @@ import java.util.List;
 public class NacosServiceDiscovery implements ServiceDiscovery{
     private static final Logger logger = LoggerFactory.getLogger(NacosServiceDiscovery.class);
     private final LoadBalancer loadBalancer;
+    private final NacosServiceCache serviceCache;
 
     public NacosServiceDiscovery(LoadBalancer loadBalancer){
         if (loadBalancer == null){
@@ -28,27 +28,53 @@ public class NacosServiceDiscovery implements ServiceDiscovery{
         }else {
             this.loadBalancer = loadBalancer;
         }
+        this.serviceCache = SingletonFactory.getInstance(NacosServiceCache.class);
     }
     /**
-     * @description 根据服务名称从注册中心获取到一个服务提供者的地址
+     * @description 根据服务名称从本地缓存的实例快照中选出一个服务提供者的地址，快照由NacosServiceCache维护
      * @param serviceName
      * @return [java.net.InetSocketAddress]
      */
     @Override
     public InetSocketAddress lookupService(String serviceName) {
-        try {
-            //利用列表获取某个服务的所有提供者
-            List<Instance> instances = NacosUtil.getAllInstance(serviceName);
-            if(instances.size() == 0){
-                logger.error("找不到对应服务：" + serviceName);
-                throw new RpcException(RpcError.SERVICE_NOT_FOUND);
+        return lookup(serviceName, null, false);
+    }
+
+    @Override
+    public InetSocketAddress lookupService(RpcRequest rpcRequest) {
+        return lookup(rpcRequest.getInterfaceName(), rpcRequest, false);
+    }
+
+    @Override
+    public InetSocketAddress lookupTrackedService(RpcRequest rpcRequest) {
+        return lookup(rpcRequest.getInterfaceName(), rpcRequest, true);
+    }
+
+    /**
+     * @description 只有probe为true(调用结果会经EndpointStats反馈给熔断器)时才占用半开服务端的探测名额
+     * @param serviceName, rpcRequest, probe
+     * @return [java.net.InetSocketAddress]
+     */
+    private InetSocketAddress lookup(String serviceName, RpcRequest rpcRequest, boolean probe) {
+        ServiceInstances snapshot = serviceCache.get(serviceName);
+        if (snapshot.isEmpty()){
+            logger.error("找不到对应服务：" + serviceName);
+            throw new RpcException(RpcError.SERVICE_NOT_FOUND);
+        }
+        //熔断时间已到的服务端优先承担探测请求，探测成功后恢复为候选
+        if (probe){
+            int index = snapshot.tryAcquireProbe();
+            if (index >= 0){
+                return snapshot.getAddress(index);
             }
-            //负载均衡获取一个服务实体
-            Instance instance = loadBalancer.select(instances);
-            return new InetSocketAddress(instance.getIp(), instance.getPort());
-        } catch (NacosException e) {
-            logger.error("获取服务时有错误发生", e);
         }
-        return null;
+        List<Instance> available = snapshot.getAvailableInstances();
+        if (available.isEmpty()){
+            //所有提供者均已熔断时立即失败，不让调用线程等待连接或响应超时
+            throw new RpcException(RpcError.SERVICE_CIRCUIT_OPEN, serviceName);
+        }
+        //负载均衡获取一个服务实体，地址已在快照中算好
+        Instance instance = loadBalancer.select(available, rpcRequest);
+        return snapshot.addressOf(instance);
     }
 }
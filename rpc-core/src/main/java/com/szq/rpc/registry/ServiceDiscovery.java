@@ -1,5 +1,7 @@
 package com.szq.rpc.registry;
 
+import com.szq.rpc.entity.RpcRequest;
+
 import java.net.InetSocketAddress;
 
 /**
@@ -13,4 +15,24 @@ public interface ServiceDiscovery {
      * @return [java.net.InetSocketAddress]
      */
     InetSocketAddress lookupService(String serviceName);
+
+    /**
+     * @description 为一次请求查找服务端地址，负载均衡可以按请求参数路由(如一致性哈希)
+     * @param rpcRequest
+     * @return [java.net.InetSocketAddress]
+     */
+    default InetSocketAddress lookupService(RpcRequest rpcRequest) {
+        return lookupService(rpcRequest.getInterfaceName());
+    }
+
+    /**
+     * @description 为一次结果会反馈给熔断器的请求查找服务端地址：调用方随后在同一线程上把请求连同EndpointStats登记到UnprocessedRequests，
+     * 登记时取走占用的探测名额，因此可以把它作为探测请求发往熔断时间已到的服务端。结果不经EndpointStats反馈的调用(如流式调用、Socket传输)
+     * 应使用lookupService()，否则占用的探测名额不会归还，该服务端将一直停留在半开状态
+     * @param rpcRequest
+     * @return [java.net.InetSocketAddress]
+     */
+    default InetSocketAddress lookupTrackedService(RpcRequest rpcRequest) {
+        return lookupService(rpcRequest);
+    }
 }
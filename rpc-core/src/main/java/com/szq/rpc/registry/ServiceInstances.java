@@ -0,0 +1,129 @@
+package com.szq.rpc.registry;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.szq.rpc.loadbalancer.CircuitBreaker;
+import com.szq.rpc.loadbalancer.EndpointStats;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Ashur
+ * @description 某个服务在某一时刻的提供者快照，创建后不再修改，可被多个线程无锁共享
+ * 只保留启用且健康的实例(全部不健康时保留全部，避免健康检查抖动导致无实例可用)，
+ * 每个实例的InetSocketAddress在创建快照时算好，查找时不再解析地址。
+ * 实例到地址的映射按对象身份查找，不调用Instance.equals()/hashCode()(它们会拼接并比较大量字段)。
+ * 已熔断的实例不作为负载均衡的候选，候选列表在熔断状态变化时才重新计算，全部正常时就是实例列表本身
+ */
+public final class ServiceInstances {
+
+    private final List<Instance> instances;
+    private final InetSocketAddress[] addresses;
+    private final Map<Instance, InetSocketAddress> addressOf;
+    private final CircuitBreaker[] breakers;
+    private volatile Candidates candidates;
+
+    private static final class Candidates {
+        private final long version;
+        private final List<Instance> instances;
+
+        private Candidates(long version, List<Instance> instances) {
+            this.version = version;
+            this.instances = instances;
+        }
+    }
+
+    private ServiceInstances(List<Instance> instances) {
+        this.instances = Collections.unmodifiableList(instances);
+        this.addresses = new InetSocketAddress[instances.size()];
+        this.addressOf = new IdentityHashMap<>(instances.size());
+        this.breakers = new CircuitBreaker[instances.size()];
+        for (int i = 0; i < addresses.length; i++) {
+            Instance instance = instances.get(i);
+            addresses[i] = new InetSocketAddress(instance.getIp(), instance.getPort());
+            addressOf.put(instance, addresses[i]);
+            breakers[i] = EndpointStats.of(addresses[i]).getCircuitBreaker();
+        }
+    }
+
+    /**
+     * @description 由注册中心返回的实例列表创建快照
+     * @param all
+     * @return [com.szq.rpc.registry.ServiceInstances]
+     */
+    public static ServiceInstances of(List<Instance> all) {
+        List<Instance> available = new ArrayList<>(all.size());
+        for (Instance instance : all) {
+            if (instance.isEnabled() && instance.isHealthy()) {
+                available.add(instance);
+            }
+        }
+        return new ServiceInstances(available.isEmpty() ? new ArrayList<>(all) : available);
+    }
+
+    public List<Instance> getInstances() {
+        return instances;
+    }
+
+    /**
+     * @description 未熔断的实例，作为负载均衡的候选；没有实例熔断时返回getInstances()本身，
+     * 负载均衡按列表对象身份缓存的状态不会失效
+     * @return [java.util.List<com.alibaba.nacos.api.naming.pojo.Instance>]
+     */
+    public List<Instance> getAvailableInstances() {
+        long version = CircuitBreaker.version();
+        Candidates current = candidates;
+        if (current != null && current.version == version) {
+            return current.instances;
+        }
+        List<Instance> available = new ArrayList<>(breakers.length);
+        for (int i = 0; i < breakers.length; i++) {
+            if (breakers[i].isClosed()) {
+                available.add(instances.get(i));
+            }
+        }
+        current = new Candidates(version, available.size() == breakers.length
+                ? instances : Collections.unmodifiableList(available));
+        candidates = current;
+        return current.instances;
+    }
+
+    /**
+     * @description 找一个熔断时间已到、可以接收探测请求的实例并占用探测名额
+     * @return [int] 实例下标，没有时返回-1
+     */
+    public int tryAcquireProbe() {
+        for (int i = 0; i < breakers.length; i++) {
+            if (breakers[i].tryAcquireProbe()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean isEmpty() {
+        return addresses.length == 0;
+    }
+
+    public int size() {
+        return addresses.length;
+    }
+
+    public InetSocketAddress getAddress(int index) {
+        return addresses[index];
+    }
+
+    /**
+     * @description 取负载均衡选中实例的地址；自定义负载均衡返回了快照以外的实例时现场创建
+     * @param instance
+     * @return [java.net.InetSocketAddress]
+     */
+    public InetSocketAddress addressOf(Instance instance) {
+        InetSocketAddress address = addressOf.get(instance);
+        return address != null ? address : new InetSocketAddress(instance.getIp(), instance.getPort());
+    }
+}
@@ -0,0 +1,25 @@
+package com.szq.rpc.serializer;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * @author Ashur
+ * @description 直接读写Netty ByteBuf的序列化接口
+ * 相比CommonSerializer的byte[]往返，编码时直接写入池化的ByteBuf，解码时直接读取帧的切片，
+ * 省去中间byte[]的申请和两次内存拷贝。实现类同时实现CommonSerializer，编解码器在可用时优先使用本接口
+ */
+public interface ByteBufSerializer {
+    /**
+     * @description 将对象序列化后追加写入out，从out当前的writerIndex开始
+     * @param obj, out
+     * @return [void]
+     */
+    void serialize(Object obj, ByteBuf out);
+
+    /**
+     * @description 从in的可读区域反序列化出对象，in一般为消息体的切片，由调用方负责释放
+     * @param in, clazz
+     * @return [java.lang.Object]
+     */
+    Object deserialize(ByteBuf in, Class<?> clazz);
+}
@@ -2,6 +2,7 @@ package com.szq.rpc.serializer;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.szq.rpc.entity.RpcBatchRequest;
 import com.szq.rpc.entity.RpcRequest;
 import com.szq.rpc.enumertaion.SerializerCode;
 import com.szq.rpc.exception.SerializeException;
@@ -33,6 +34,10 @@ public class JsonSerializer implements CommonSerializer{
             Object obj = objectMapper.readValue(bytes, clazz);
             if (obj instanceof RpcRequest){
                 obj = handleRequest(obj);
+            }else if (obj instanceof RpcBatchRequest){
+                for (RpcRequest rpcRequest : ((RpcBatchRequest) obj).getRequests()) {
+                    handleRequest(rpcRequest);
+                }
             }
             return obj;
         }catch (IOException e){
@@ -3,17 +3,20 @@ package com.szq.rpc.serializer;
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.szq.rpc.entity.RpcBatchRequest;
+import com.szq.rpc.entity.RpcBatchResponse;
 import com.szq.rpc.entity.RpcRequest;
 import com.szq.rpc.entity.RpcResponse;
+import com.szq.rpc.entity.RpcStreamChunk;
+import com.szq.rpc.entity.RpcStreamCredit;
 import com.szq.rpc.enumertaion.SerializerCode;
 import com.szq.rpc.exception.SerializeException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.sql.rowset.serial.SerialException;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-
 
 /**
  * @author Ashur
@@ -29,7 +32,7 @@ import java.io.ByteArrayOutputStream;
  * Arrays.sort(intervals, (v1, v2) -> v1[0] - v2[0]); 假设传来两个值，v1 与 v2，那么他们的先后顺序以 v1[0] 比 v2[0] 的结果为准，
  * 即：若 v1[0] < v2[0] 则 v1 < v2，若 = 则 =，若 > 则 >
  */
-public class KryoSerializer implements CommonSerializer{
+public class KryoSerializer implements CommonSerializer, ByteBufSerializer{
 
     private static final Logger logger = LoggerFactory.getLogger(KryoSerializer.class);
 
@@ -39,21 +42,31 @@ public class KryoSerializer implements CommonSerializer{
         //注册类
         kryo.register(RpcResponse.class);
         kryo.register(RpcRequest.class);
+        kryo.register(RpcBatchRequest.class);
+        kryo.register(RpcBatchResponse.class);
+        kryo.register(RpcStreamChunk.class);
+        kryo.register(RpcStreamCredit.class);
         //循环引用检测，默认为true
         kryo.setReferences(true);
         //不强制要求注册类，默认为false，若设置为true则要求涉及到的所有类都要注册，包括jdk中的比如Object
         kryo.setRegistrationRequired(false);
         return kryo;
     });
+    /**
+     * 每个线程复用同一个Output/Input及其内部缓冲区，避免每次调用都申请4KB的缓冲数组
+     * Output不设上限(-1)，保证超过初始容量的对象也能完整写入
+     * arrayInput直接包装外部数组；streamInput拥有自己的缓冲区，两者分开避免流式读取时写坏外部数组
+     */
+    private static final ThreadLocal<Output> outputThreadLocal = ThreadLocal.withInitial(() -> new Output(4096, -1));
+    private static final ThreadLocal<Input> arrayInputThreadLocal = ThreadLocal.withInitial(Input::new);
+    private static final ThreadLocal<Input> streamInputThreadLocal = ThreadLocal.withInitial(() -> new Input(4096));
 
     @Override
-
     public byte[] serialize(Object obj) {
-        try(ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        Output output = new Output(byteArrayOutputStream)){
-            Kryo kryo = kryoThreadLocal.get();
-            kryo.writeObject(output, obj);
-            kryoThreadLocal.remove();
+        Output output = outputThreadLocal.get();
+        try {
+            output.setOutputStream(null);
+            kryoThreadLocal.get().writeObject(output, obj);
             return output.toBytes();
         }catch (Exception e){
             logger.error("序列化时有错误发生:" + e);
@@ -61,16 +74,55 @@ public class KryoSerializer implements CommonSerializer{
         }
     }
 
-
     @Override
     public Object deserialize(byte[] bytes, Class<?> clazz) {
-        try (
-            ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(bytes);
-            Input input = new Input(byteArrayInputStream)){
-            Kryo kryo = kryoThreadLocal.get();
-            Object o = kryo.readObject(input, clazz);
-            kryoThreadLocal.remove();
-            return o;
+        Input input = arrayInputThreadLocal.get();
+        try {
+            input.setBuffer(bytes);
+            return kryoThreadLocal.get().readObject(input, clazz);
+        }catch (Exception e){
+            logger.error("反序列化时有错误发生:" + e);
+            throw new SerializeException("反序列化时有错误发生");
+        }
+    }
+
+    /**
+     * @description 经由复用的Output缓冲区直接写入ByteBuf，flush()时一次性拷贝进目标缓冲区
+     * @param obj, out
+     * @return [void]
+     */
+    @Override
+    public void serialize(Object obj, ByteBuf out) {
+        Output output = outputThreadLocal.get();
+        try {
+            output.setOutputStream(new ByteBufOutputStream(out));
+            kryoThreadLocal.get().writeObject(output, obj);
+            output.flush();
+        }catch (Exception e){
+            logger.error("序列化时有错误发生:" + e);
+            throw new SerializeException("序列化时有错误发生");
+        }finally {
+            output.setOutputStream(null);
+        }
+    }
+
+    /**
+     * @description 堆内缓冲区直接读取其底层数组，堆外缓冲区则通过ByteBufInputStream分段读入复用的Input缓冲区
+     * @param in, clazz
+     * @return [java.lang.Object]
+     */
+    @Override
+    public Object deserialize(ByteBuf in, Class<?> clazz) {
+        Input input;
+        if (in.hasArray()){
+            input = arrayInputThreadLocal.get();
+            input.setBuffer(in.array(), in.arrayOffset() + in.readerIndex(), in.readableBytes());
+        }else {
+            input = streamInputThreadLocal.get();
+            input.setInputStream(new ByteBufInputStream(in));
+        }
+        try {
+            return kryoThreadLocal.get().readObject(input, clazz);
         }catch (Exception e){
             logger.error("反序列化时有错误发生:" + e);
             throw new SerializeException("反序列化时有错误发生");
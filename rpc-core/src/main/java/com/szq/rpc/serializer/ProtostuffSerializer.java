@@ -1,26 +1,34 @@
 package com.szq.rpc.serializer;
 
 import com.szq.rpc.enumertaion.SerializerCode;
+import com.szq.rpc.exception.SerializeException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 import io.protostuff.LinkedBuffer;
 import io.protostuff.ProtostuffIOUtil;
 import io.protostuff.Schema;
 import io.protostuff.runtime.RuntimeSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Scanner;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Ashur
  * @description Protostuff序列化器
  */
-public class ProtostuffSerializer implements CommonSerializer{
+public class ProtostuffSerializer implements CommonSerializer, ByteBufSerializer{
+    private static final Logger logger = LoggerFactory.getLogger(ProtostuffSerializer.class);
     /**
      * 避免每次序列化时都重新申请Buffer空间,用来存放对象序列化之后的数据
      * 如果你设置的空间不足,会自动拓展的,但这个大小还是要设置一个合适的值，设置大了浪费空间，设置小了会自动拓展浪费时间
+     * 同一个序列化器被多个Channel的编解码器共享，运行在不同的EventLoop线程上，因此每个线程持有自己的Buffer
      */
-    private LinkedBuffer buffer = LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE);
+    private static final ThreadLocal<LinkedBuffer> bufferThreadLocal = ThreadLocal.withInitial(() -> LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE));
     /**
      * 缓存类对应的Schema，由于构造schema需要获得对象的类和字段信息，会用到反射机制，这是一个很耗时的过程吗，因此进行缓存很有必要，下次遇到相同的类直接从缓冲中get就行了
      */
@@ -30,6 +38,7 @@ public class ProtostuffSerializer implements CommonSerializer{
     public byte[] serialize(Object obj) {
         Class clazz = obj.getClass();
         Schema schema = getSchema(clazz);
+        LinkedBuffer buffer = bufferThreadLocal.get();
         byte[] data;
         try {
             //序列化操作，将对象转换为字节数组
@@ -70,6 +79,52 @@ public class ProtostuffSerializer implements CommonSerializer{
         return obj;
     }
 
+    /**
+     * @description 先写入复用的LinkedBuffer，再将其中的分段依次拷贝进目标ByteBuf
+     * @param obj, out
+     * @return [void]
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void serialize(Object obj, ByteBuf out) {
+        Schema schema = getSchema(obj.getClass());
+        LinkedBuffer buffer = bufferThreadLocal.get();
+        try {
+            ProtostuffIOUtil.writeTo(new ByteBufOutputStream(out), obj, schema, buffer);
+        }catch (IOException e){
+            logger.error("序列化时有错误发生:" + e);
+            throw new SerializeException("序列化时有错误发生");
+        }finally {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * @description 堆内缓冲区直接按数组区间解析，堆外缓冲区借助LinkedBuffer作为读缓冲流式解析
+     * @param in, clazz
+     * @return [java.lang.Object]
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object deserialize(ByteBuf in, Class<?> clazz) {
+        Schema schema = getSchema(clazz);
+        Object obj = schema.newMessage();
+        LinkedBuffer buffer = bufferThreadLocal.get();
+        try {
+            if (in.hasArray()){
+                ProtostuffIOUtil.mergeFrom(in.array(), in.arrayOffset() + in.readerIndex(), in.readableBytes(), obj, schema);
+            }else {
+                ProtostuffIOUtil.mergeFrom(new ByteBufInputStream(in), obj, schema, buffer);
+            }
+        }catch (IOException e){
+            logger.error("反序列化时有错误发生:" + e);
+            throw new SerializeException("反序列化时有错误发生");
+        }finally {
+            buffer.clear();
+        }
+        return obj;
+    }
+
     @Override
     public int getCode() {
         return SerializerCode.valueOf("PROTOBUFF").getCode();
@@ -2,8 +2,10 @@ package com.szq.rpc.transport;
 
 import com.szq.rpc.annotation.Service;
 import com.szq.rpc.annotation.ServiceScan;
+import com.szq.rpc.enumertaion.DispatchMode;
 import com.szq.rpc.enumertaion.RpcError;
 import com.szq.rpc.exception.RpcException;
+import com.szq.rpc.handler.RequestDispatcher;
 import com.szq.rpc.provider.ServiceProvider;
 import com.szq.rpc.registry.ServiceRegistry;
 import com.szq.rpc.util.ReflectUtil;
@@ -60,6 +62,7 @@ public abstract class AbstractRpcServer implements RpcServer{
             if(clazz.isAnnotationPresent(Service.class)){
                 //获取Service注解接口对应name()的值，默认设置的“”
                 String serviceName = clazz.getAnnotation(Service.class).name();
+                DispatchMode dispatchMode = clazz.getAnnotation(Service.class).dispatch();
                 Object obj;
                 try{
                     //创建服务Impl类的实例
@@ -72,10 +75,10 @@ public abstract class AbstractRpcServer implements RpcServer{
                     //一个服务Impl类可能实现了多个服务接口
                     Class<?>[] interfaces = clazz.getInterfaces();
                     for(Class<?> oneInterface : interfaces){
-                        publishService(obj, oneInterface.getCanonicalName());
+                        publishService(obj, oneInterface.getCanonicalName(), dispatchMode);
                     }
                 }else {
-                    publishService(obj, serviceName);
+                    publishService(obj, serviceName, dispatchMode);
                 }
             }
         }
@@ -92,4 +95,14 @@ public abstract class AbstractRpcServer implements RpcServer{
         serviceRegistry.register(serviceName, new InetSocketAddress(host, port));
     }
 
-}
\ No newline at end of file
+    /**
+     * @description 发布服务，并指定该服务请求的执行线程
+     * @param service, serviceName, dispatchMode
+     * @return [void]
+     */
+    public <T> void publishService(T service, String serviceName, DispatchMode dispatchMode){
+        RequestDispatcher.register(serviceName, dispatchMode);
+        publishService(service, serviceName);
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.szq.rpc.transport;
+
+import com.szq.rpc.annotation.Idempotent;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Ashur
+ * @description 幂等方法的调用策略，由接口方法上的@Idempotent得到，每个方法一个实例，同时记录该方法的响应延迟
+ */
+public final class InvocationPolicy {
+
+    private final int retries;
+    private final boolean hedge;
+    private final long hedgeDelayMillis;
+    private final LatencyTracker latencyTracker = new LatencyTracker();
+
+    /**
+     * @description 由生成的存根类调用，参数取自@Idempotent
+     * @param retries, hedge, hedgeDelayMillis
+     */
+    public InvocationPolicy(int retries, boolean hedge, long hedgeDelayMillis) {
+        this.retries = Math.max(0, retries);
+        this.hedge = hedge;
+        this.hedgeDelayMillis = hedgeDelayMillis;
+    }
+
+    /**
+     * @description 读取方法上的@Idempotent
+     * @param method
+     * @return [com.szq.rpc.transport.InvocationPolicy] 方法不是幂等的时返回null
+     */
+    public static InvocationPolicy of(Method method) {
+        Idempotent idempotent = method.getAnnotation(Idempotent.class);
+        return idempotent == null ? null
+                : new InvocationPolicy(idempotent.retries(), idempotent.hedge(), idempotent.hedgeDelayMillis());
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    /**
+     * @description 发出对冲请求前的等待时间：注解指定了固定值时用固定值，否则取最近响应延迟的p95
+     * @return [long] 毫秒，不发对冲请求(未开启或延迟样本不足)时返回-1
+     */
+    public long hedgeDelayMillis() {
+        if (!hedge) {
+            return -1;
+        }
+        if (hedgeDelayMillis > 0) {
+            return hedgeDelayMillis;
+        }
+        long p95 = latencyTracker.getP95Nanos();
+        return p95 < 0 ? -1 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(p95));
+    }
+
+    public LatencyTracker getLatencyTracker() {
+        return latencyTracker;
+    }
+}
@@ -0,0 +1,47 @@
+package com.szq.rpc.transport;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @author Ashur
+ * @description 一个方法最近的响应延迟，用来确定对冲请求的等待时间
+ * 最近SIZE次延迟存放在环形数组中，每记录RECOMPUTE_INTERVAL次重新排序算一次p95，读取时只读一个volatile字段
+ */
+public final class LatencyTracker {
+
+    private static final int SIZE = 1024;
+    private static final int RECOMPUTE_INTERVAL = 128;
+    /**
+     * 样本数少于该值时不给出p95，此时不发对冲请求
+     */
+    private static final int MIN_SAMPLES = 100;
+
+    private final AtomicLongArray samples = new AtomicLongArray(SIZE);
+    private final AtomicLong count = new AtomicLong();
+    private volatile long p95Nanos = -1;
+
+    public void record(long latencyNanos) {
+        long n = count.getAndIncrement();
+        samples.set((int) (n & (SIZE - 1)), latencyNanos);
+        long recorded = n + 1;
+        if (recorded >= MIN_SAMPLES && recorded % RECOMPUTE_INTERVAL == 0) {
+            int size = (int) Math.min(recorded, SIZE);
+            long[] copy = new long[size];
+            for (int i = 0; i < size; i++) {
+                copy[i] = samples.get(i);
+            }
+            Arrays.sort(copy);
+            p95Nanos = copy[(int) (size * 0.95)];
+        }
+    }
+
+    /**
+     * @description 最近响应延迟的p95(纳秒)
+     * @return [long] 样本不足时返回-1
+     */
+    public long getP95Nanos() {
+        return p95Nanos;
+    }
+}
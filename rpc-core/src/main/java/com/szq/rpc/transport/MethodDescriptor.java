@@ -0,0 +1,124 @@
+package com.szq.rpc.transport;
+
+import com.szq.rpc.annotation.AsyncMirror;
+import com.szq.rpc.entity.RpcRequest;
+import com.szq.rpc.util.MethodIdUtil;
+import com.szq.rpc.util.RequestIdGenerator;
+
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * @author Ashur
+ * @description 客户端预先计算好的方法元数据
+ * 每个接口方法只解析一次，之后每次调用直接复用接口名、方法号和参数类型，不再调用getParameterTypes()拷贝数组
+ */
+public final class MethodDescriptor {
+    private final String interfaceName;
+    private final String methodName;
+    private final int methodId;
+    private final Class<?>[] paramTypes;
+    /**
+     * 方法返回CompletableFuture时为异步调用，代理直接返回结果future，不阻塞调用线程
+     */
+    private final boolean async;
+    /**
+     * 方法返回Iterator时为流式调用，代理返回逐个接收元素的迭代器
+     */
+    private final boolean streaming;
+    /**
+     * 方法标注了@Idempotent时的重试和对冲策略，否则为null
+     */
+    private final InvocationPolicy policy;
+
+    public MethodDescriptor(Method method) {
+        //异步镜像接口按其对应的服务接口发送请求
+        AsyncMirror mirror = method.getDeclaringClass().getAnnotation(AsyncMirror.class);
+        this.interfaceName = mirror == null ? method.getDeclaringClass().getName() : mirror.value().getName();
+        this.methodName = method.getName();
+        this.paramTypes = method.getParameterTypes();
+        this.methodId = MethodIdUtil.methodId(methodName, paramTypes);
+        this.async = isAsync(method.getReturnType());
+        this.streaming = isStreaming(method.getReturnType());
+        this.policy = InvocationPolicy.of(method);
+    }
+
+    /**
+     * @description 由生成的存根类调用，方法号已在编译期按MethodIdUtil的规则算好
+     * @param interfaceName, methodName, methodId, paramTypes, async
+     */
+    public MethodDescriptor(String interfaceName, String methodName, int methodId, Class<?>[] paramTypes, boolean async) {
+        this(interfaceName, methodName, methodId, paramTypes, async, false);
+    }
+
+    public MethodDescriptor(String interfaceName, String methodName, int methodId, Class<?>[] paramTypes,
+                            boolean async, boolean streaming) {
+        this(interfaceName, methodName, methodId, paramTypes, async, streaming, null);
+    }
+
+    public MethodDescriptor(String interfaceName, String methodName, int methodId, Class<?>[] paramTypes,
+                            boolean async, boolean streaming, InvocationPolicy policy) {
+        this.interfaceName = interfaceName;
+        this.methodName = methodName;
+        this.methodId = methodId;
+        this.paramTypes = paramTypes;
+        this.async = async;
+        this.streaming = streaming;
+        this.policy = policy;
+    }
+
+    /**
+     * @description 返回值为CompletableFuture或CompletionStage的方法按异步方式调用
+     * @param returnType
+     * @return [boolean]
+     */
+    public static boolean isAsync(Class<?> returnType){
+        return returnType == CompletableFuture.class || returnType == CompletionStage.class;
+    }
+
+    /**
+     * @description 返回值为Iterator的方法按流式方式调用，服务端按客户端的消费速度分片推送
+     * @param returnType
+     * @return [boolean]
+     */
+    public static boolean isStreaming(Class<?> returnType){
+        return returnType == Iterator.class;
+    }
+
+    /**
+     * @description 创建一次调用的请求
+     * @param args 调用参数
+     * @param compact 为true时只发送方法号，不发送方法名和参数类型；JSON序列化器需要参数类型还原参数，不能使用
+     * @return [com.szq.rpc.entity.RpcRequest]
+     */
+    public RpcRequest newRequest(Object[] args, boolean compact){
+        return new RpcRequest(RequestIdGenerator.nextId(), interfaceName,
+                compact ? null : methodName, methodId, args, compact ? null : paramTypes, false);
+    }
+
+    public String getInterfaceName() {
+        return interfaceName;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public int getMethodId() {
+        return methodId;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public InvocationPolicy getPolicy() {
+        return policy;
+    }
+}
@@ -9,5 +9,11 @@ import com.szq.rpc.serializer.CommonSerializer;
  */
 public interface RpcClient {
     Object sendRequest(RpcRequest rpcRequest);
+
+    /**
+     * @description 客户端使用的序列化器，代理据此决定请求中需要携带哪些字段
+     * @return [com.szq.rpc.serializer.CommonSerializer]
+     */
+    CommonSerializer getSerializer();
     int DEFAULT_SERIALIZER = CommonSerializer.KRYO_SERIALIZER;
 }
@@ -2,6 +2,9 @@ package com.szq.rpc.transport;
 
 import com.szq.rpc.entity.RpcRequest;
 import com.szq.rpc.entity.RpcResponse;
+import com.szq.rpc.enumertaion.RpcError;
+import com.szq.rpc.exception.RpcException;
+import com.szq.rpc.serializer.CommonSerializer;
 import com.szq.rpc.transport.netty.client.NettyClient;
 import com.szq.rpc.transport.socket.RpcMessageChecker;
 import com.szq.rpc.transport.socket.server.SocketClient;
@@ -11,8 +14,10 @@ import org.slf4j.LoggerFactory;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.util.UUID;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 
 /**
@@ -22,34 +27,106 @@ import java.util.concurrent.ExecutionException;
 public class RpcClientProxy implements InvocationHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(RpcClientProxy.class);
+    /**
+     * 生成的存根类名后缀，与存根生成器保持一致
+     */
+    public static final String STUB_SUFFIX = "_RpcStub";
     private final RpcClient client;
+    /**
+     * 通过本代理发起的调用的超时时间（毫秒），为null时使用客户端的默认值；
+     * 需要为不同服务设置不同超时时，为每个服务单独创建代理即可
+     */
+    private final Long timeoutMillis;
+    /**
+     * 每个方法的元数据只解析一次
+     */
+    private final Map<Method, MethodDescriptor> descriptors = new ConcurrentHashMap<>();
+    /**
+     * 是否只发送方法号，JSON序列化器需要参数类型才能还原参数
+     */
+    private final boolean compactRequest;
 
     public RpcClientProxy(RpcClient client) {
+        this(client, null);
+    }
+
+    public RpcClientProxy(RpcClient client, Long timeoutMillis) {
         this.client = client;
+        this.timeoutMillis = timeoutMillis;
+        CommonSerializer serializer = client.getSerializer();
+        this.compactRequest = serializer != null && serializer.getCode() != CommonSerializer.JSON_SERIALIZER;
     }
 
     //抑制编译器产生警告信息
     @SuppressWarnings("unchecked")
     public <T> T getProxy(Class<T> clazz){
+        //优先使用编译期生成的存根类，没有时再创建JDK动态代理
+        T stub = loadStub(clazz);
+        if (stub != null){
+            return stub;
+        }
         //创建代理对象
         return (T) Proxy.newProxyInstance(clazz.getClassLoader(), new Class<?>[]{clazz}, this);
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * @description 加载由@GenerateStubs生成的存根类"接口名_RpcStub"，存根类直接调用invoke(MethodDescriptor, Object[])，
+     * 方法元数据在存根类中静态生成，不经过InvocationHandler和Method
+     * @param clazz
+     * @return [T] 没有生成存根类时返回null
+     */
+    private <T> T loadStub(Class<T> clazz){
+        try {
+            Class<?> stubClass = Class.forName(clazz.getName() + STUB_SUFFIX, true, clazz.getClassLoader());
+            return clazz.cast(stubClass.getConstructor(RpcClientProxy.class).newInstance(this));
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            logger.warn("加载存根类失败，改用动态代理: {}", clazz.getName(), e);
+            return null;
+        }
+    }
+
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) {
-        logger.info("调用方法：{}#{}", method.getDeclaringClass().getName(), method.getName());
-        RpcRequest rpcRequest = new RpcRequest(UUID.randomUUID().toString(), method.getDeclaringClass().getName(),
-                method.getName(), args, method.getParameterTypes(), false);
+        //Java 8的computeIfAbsent()命中时也会加锁，先get()
+        MethodDescriptor descriptor = descriptors.get(method);
+        if (descriptor == null){
+            descriptor = descriptors.computeIfAbsent(method, MethodDescriptor::new);
+        }
+        return invoke(descriptor, args);
+    }
+
+    /**
+     * @description 发起一次远程调用，动态代理和生成的存根类都走这里
+     * @param descriptor, args
+     * @return [java.lang.Object] 调用结果
+     */
+    @SuppressWarnings("unchecked")
+    public Object invoke(MethodDescriptor descriptor, Object[] args) {
+        logger.info("调用方法：{}#{}", descriptor.getInterfaceName(), descriptor.getMethodName());
+        RpcRequest rpcRequest = descriptor.newRequest(args, compactRequest);
+        if (descriptor.isAsync()){
+            return invokeAsync(descriptor, rpcRequest);
+        }
+        if (descriptor.isStreaming()){
+            if (!(client instanceof NettyClient)){
+                throw new RpcException(RpcError.SERVICE_INVOCATION_FAILURE, "仅NettyClient支持流式调用");
+            }
+            return ((NettyClient) client).sendStreamRequest(rpcRequest);
+        }
         RpcResponse rpcResponse = null;
         if(client instanceof NettyClient){
             try {
-                //异步获取调用结果
-                CompletableFuture<RpcResponse> completableFuture = (CompletableFuture<RpcResponse>)client.sendRequest(rpcRequest);
-                rpcResponse = completableFuture.get();
-            }catch (Exception e){
+                //异步获取调用结果，get()只阻塞调用线程；在虚拟线程上调用时只挂起虚拟线程，不占用平台线程
+                rpcResponse = send((NettyClient) client, descriptor, rpcRequest).get();
+            }catch (ExecutionException e){
+                //超时、连接失败等以RpcException抛给调用方，不能当作返回了null
                 logger.error("方法调用请求发送失败", e);
-                return null;
+                throw toRpcException(rpcRequest, e);
+            }catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                throw toRpcException(rpcRequest, e);
             }
         }
         if(client instanceof SocketClient){
@@ -58,4 +135,63 @@ public class RpcClientProxy implements InvocationHandler {
         RpcMessageChecker.check(rpcRequest, rpcResponse);
         return rpcResponse.getData();
     }
+
+    /**
+     * @description 异步调用：直接返回由响应映射出的结果future，调用线程不等待网络往返
+     * future以RpcException异常结束表示调用失败(超时、连接失败、服务端返回失败等)；
+     * 结果在Netty的I/O线程上完成，耗时的后续处理请使用thenApplyAsync()等带线程池的方法
+     * @param descriptor, rpcRequest
+     * @return [java.util.concurrent.CompletableFuture<java.lang.Object>]
+     */
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<Object> invokeAsync(MethodDescriptor descriptor, RpcRequest rpcRequest){
+        CompletableFuture<Object> resultFuture = new CompletableFuture<>();
+        if (client instanceof NettyClient){
+            CompletableFuture<RpcResponse> responseFuture = send((NettyClient) client, descriptor, rpcRequest);
+            responseFuture.whenComplete((rpcResponse, cause) -> {
+                if (cause != null){
+                    resultFuture.completeExceptionally(toRpcException(rpcRequest, cause));
+                }else {
+                    complete(resultFuture, rpcRequest, rpcResponse);
+                }
+            });
+            return resultFuture;
+        }
+        try {
+            complete(resultFuture, rpcRequest, (RpcResponse) client.sendRequest(rpcRequest));
+        }catch (RuntimeException e){
+            resultFuture.completeExceptionally(toRpcException(rpcRequest, e));
+        }
+        return resultFuture;
+    }
+
+    /**
+     * @description 通过NettyClient发送请求，幂等方法按其策略重试和对冲
+     * @param nettyClient, descriptor, rpcRequest
+     * @return [java.util.concurrent.CompletableFuture<com.szq.rpc.entity.RpcResponse>]
+     */
+    private CompletableFuture<RpcResponse> send(NettyClient nettyClient, MethodDescriptor descriptor, RpcRequest rpcRequest){
+        long timeout = timeoutMillis == null ? nettyClient.getTimeoutMillis() : timeoutMillis;
+        InvocationPolicy policy = descriptor.getPolicy();
+        return policy == null ? nettyClient.sendRequest(rpcRequest, timeout) : nettyClient.sendRequest(rpcRequest, timeout, policy);
+    }
+
+    private static void complete(CompletableFuture<Object> resultFuture, RpcRequest rpcRequest, RpcResponse rpcResponse){
+        try {
+            RpcMessageChecker.check(rpcRequest, rpcResponse);
+            resultFuture.complete(rpcResponse.getData());
+        }catch (RpcException e){
+            resultFuture.completeExceptionally(e);
+        }
+    }
+
+    private static RpcException toRpcException(RpcRequest rpcRequest, Throwable cause){
+        if ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null){
+            cause = cause.getCause();
+        }
+        if (cause instanceof RpcException){
+            return (RpcException) cause;
+        }
+        return new RpcException(RpcError.SERVICE_INVOCATION_FAILURE.getMessage() + ":" + rpcRequest.getInterfaceName(), cause);
+    }
 }
@@ -0,0 +1,253 @@
+package com.szq.rpc.transport.netty;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.FastThreadLocal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * @author Ashur
+ * @description Netty传输层实现的选择：Linux上优先使用原生epoll，其次NIO；io_uring需显式开启
+ * 通过系统属性rpc.transport指定：auto(默认)、epoll、io_uring、nio，指定的实现不可用时回退到NIO。
+ * io_uring来自netty-incubator-transport-native-io_uring，未放入依赖，类路径上存在且内核支持时才会生效
+ */
+public enum NettyTransport {
+    IO_URING,
+    EPOLL,
+    NIO;
+
+    private static final Logger logger = LoggerFactory.getLogger(NettyTransport.class);
+
+    public static final String TRANSPORT_PROPERTY = "rpc.transport";
+
+    private static final String IO_URING_PACKAGE = "io.netty.incubator.channel.uring.";
+
+    /**
+     * 标记由newEventLoopGroup创建的I/O线程，在线程启动时设置
+     */
+    private static final FastThreadLocal<Boolean> EVENT_LOOP_THREAD = new FastThreadLocal<>();
+
+    private static final NettyTransport CURRENT = select(System.getProperty(TRANSPORT_PROPERTY, "auto"));
+
+    /**
+     * 以下为原生传输专用的TCP参数，NIO下忽略
+     */
+    private static volatile boolean edgeTriggered = true;
+    private static volatile boolean tcpQuickAck;
+    /**
+     * 服务端TCP Fast Open队列长度，大于0时服务端开启，客户端同时开启TCP_FASTOPEN_CONNECT
+     */
+    private static volatile int tcpFastOpen;
+
+    /**
+     * @description 当前进程使用的传输实现，类加载时确定
+     * @return [com.szq.rpc.transport.netty.NettyTransport]
+     */
+    public static NettyTransport current() {
+        return CURRENT;
+    }
+
+    private static NettyTransport select(String name) {
+        NettyTransport transport;
+        switch (name.toLowerCase()) {
+            case "nio":
+                transport = NIO;
+                break;
+            case "io_uring":
+                transport = ioUringAvailable() ? IO_URING : epollOrNio();
+                break;
+            case "epoll":
+            case "auto":
+                transport = epollOrNio();
+                break;
+            default:
+                logger.warn("未知的传输实现: {}，使用自动选择", name);
+                transport = epollOrNio();
+        }
+        logger.info("Netty传输实现: {}", transport);
+        return transport;
+    }
+
+    private static NettyTransport epollOrNio() {
+        if (Epoll.isAvailable()) {
+            return EPOLL;
+        }
+        logger.info("epoll不可用，回退到NIO: {}", Epoll.unavailabilityCause().toString());
+        return NIO;
+    }
+
+    private static boolean ioUringAvailable() {
+        try {
+            Class<?> ioUring = Class.forName(IO_URING_PACKAGE + "IOUring");
+            if ((Boolean) ioUring.getMethod("isAvailable").invoke(null)) {
+                return true;
+            }
+            logger.info("io_uring不可用: {}", ioUring.getMethod("unavailabilityCause").invoke(null));
+        } catch (ReflectiveOperationException | LinkageError e) {
+            logger.info("类路径上没有可用的io_uring传输: {}", e.toString());
+        }
+        return false;
+    }
+
+    /**
+     * @description 设置epoll是否使用边缘触发，默认开启；关闭后使用水平触发
+     * @param enabled
+     * @return [void]
+     */
+    public static void setEdgeTriggered(boolean enabled) {
+        edgeTriggered = enabled;
+    }
+
+    /**
+     * @description 开启TCP_QUICKACK，收到数据后立即回复ACK，不等待延迟确认，请求-响应模式下可降低尾延迟
+     * @param enabled
+     * @return [void]
+     */
+    public static void setTcpQuickAck(boolean enabled) {
+        tcpQuickAck = enabled;
+    }
+
+    /**
+     * @description 开启TCP Fast Open，重连时可在SYN中携带首个请求，需要内核net.ipv4.tcp_fastopen支持
+     * @param queueLength 服务端等待完成握手的TFO连接队列长度，小于等于0表示关闭
+     * @return [void]
+     */
+    public static void setTcpFastOpen(int queueLength) {
+        tcpFastOpen = queueLength;
+    }
+
+    /**
+     * @description 是否支持SO_REUSEPORT，支持时服务端可在同一端口上绑定多个监听Channel，由内核分发新连接
+     * @return [boolean]
+     */
+    public boolean supportsReusePort() {
+        return this == EPOLL;
+    }
+
+    /**
+     * @description 创建与传输实现对应的EventLoopGroup
+     * @param nThreads 线程数，0表示使用Netty默认值(CPU核数的2倍)
+     * @param name 线程名前缀
+     * @return [io.netty.channel.EventLoopGroup]
+     */
+    public EventLoopGroup newEventLoopGroup(int nThreads, String name) {
+        ThreadFactory threadFactory = new DefaultThreadFactory(name) {
+            @Override
+            public Thread newThread(Runnable r) {
+                return super.newThread(() -> {
+                    EVENT_LOOP_THREAD.set(Boolean.TRUE);
+                    r.run();
+                });
+            }
+        };
+        switch (this) {
+            case IO_URING:
+                return (EventLoopGroup) newIoUring("IOUringEventLoopGroup", nThreads, threadFactory);
+            case EPOLL:
+                return new EpollEventLoopGroup(nThreads, threadFactory);
+            default:
+                return new NioEventLoopGroup(nThreads, threadFactory);
+        }
+    }
+
+    /**
+     * @description 当前线程是否为客户端或服务端的EventLoop线程(由newEventLoopGroup创建)，在其上阻塞会拖住它负责的所有连接
+     * @return [boolean]
+     */
+    public static boolean inEventLoopThread() {
+        return EVENT_LOOP_THREAD.isSet();
+    }
+
+    @SuppressWarnings("unchecked")
+    public Class<? extends SocketChannel> socketChannelClass() {
+        switch (this) {
+            case IO_URING:
+                return (Class<? extends SocketChannel>) ioUringClass("IOUringSocketChannel");
+            case EPOLL:
+                return EpollSocketChannel.class;
+            default:
+                return NioSocketChannel.class;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public Class<? extends ServerSocketChannel> serverSocketChannelClass() {
+        switch (this) {
+            case IO_URING:
+                return (Class<? extends ServerSocketChannel>) ioUringClass("IOUringServerSocketChannel");
+            case EPOLL:
+                return EpollServerSocketChannel.class;
+            default:
+                return NioServerSocketChannel.class;
+        }
+    }
+
+    /**
+     * @description 设置客户端连接的原生传输参数
+     * @param bootstrap
+     * @return [void]
+     */
+    public void applyClientOptions(Bootstrap bootstrap) {
+        if (this != EPOLL) {
+            return;
+        }
+        bootstrap.option(EpollChannelOption.EPOLL_MODE, edgeTriggered ? EpollMode.EDGE_TRIGGERED : EpollMode.LEVEL_TRIGGERED)
+                .option(EpollChannelOption.TCP_QUICKACK, tcpQuickAck);
+        if (tcpFastOpen > 0) {
+            bootstrap.option(EpollChannelOption.TCP_FASTOPEN_CONNECT, true);
+        }
+    }
+
+    /**
+     * @description 设置服务端监听Channel及其子连接的原生传输参数
+     * @param serverBootstrap
+     * @param reusePort 是否开启SO_REUSEPORT
+     * @return [void]
+     */
+    public void applyServerOptions(ServerBootstrap serverBootstrap, boolean reusePort) {
+        if (this != EPOLL) {
+            return;
+        }
+        EpollMode mode = edgeTriggered ? EpollMode.EDGE_TRIGGERED : EpollMode.LEVEL_TRIGGERED;
+        serverBootstrap.option(EpollChannelOption.EPOLL_MODE, mode)
+                .option(EpollChannelOption.SO_REUSEPORT, reusePort)
+                .childOption(EpollChannelOption.EPOLL_MODE, mode)
+                .childOption(EpollChannelOption.TCP_QUICKACK, tcpQuickAck);
+        if (tcpFastOpen > 0) {
+            serverBootstrap.option(EpollChannelOption.TCP_FASTOPEN, tcpFastOpen);
+        }
+    }
+
+    private static Class<?> ioUringClass(String simpleName) {
+        try {
+            return Class.forName(IO_URING_PACKAGE + simpleName);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("io_uring传输类不存在: " + simpleName, e);
+        }
+    }
+
+    private static Object newIoUring(String simpleName, int nThreads, ThreadFactory threadFactory) {
+        try {
+            return ioUringClass(simpleName).getConstructor(int.class, ThreadFactory.class)
+                    .newInstance(nThreads, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("无法创建io_uring EventLoopGroup", e);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.szq.rpc.transport.netty;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.util.internal.PlatformDependent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @author Ashur
+ * @description 客户端与服务端共享的Netty传输资源：按配置大小创建的EventLoopGroup、池化内存分配器以及缓冲区相关参数
+ * 同一进程中的客户端和服务端共用一组I/O线程，避免各自按CPU核数2倍创建线程导致线程数超过核数。
+ * 配置需在第一次使用(建立连接或启动服务端)之前设置；shutdown()之后再次使用会按当前配置重新创建
+ */
+public class TransportResources {
+    private static final Logger logger = LoggerFactory.getLogger(TransportResources.class);
+
+    private static final TransportResources SHARED = new TransportResources();
+
+    /**
+     * 服务端accept新连接的线程数，大于1时借助SO_REUSEPORT在同一端口上绑定多个监听Channel
+     */
+    private int acceptorThreads = 1;
+    /**
+     * 客户端连接与服务端已接受连接共用的I/O线程数
+     */
+    private int ioThreads = Runtime.getRuntime().availableProcessors();
+    private boolean directBuffers = PlatformDependent.directBufferPreferred();
+    /**
+     * 分配器的arena数量，0表示使用Netty的默认值
+     */
+    private int arenas;
+    /**
+     * 出站缓冲区的高低水位，超过高水位时Channel变为不可写，降到低水位以下后恢复
+     */
+    private int writeBufferLowWaterMark = 32 * 1024;
+    private int writeBufferHighWaterMark = 64 * 1024;
+    /**
+     * socket发送/接收缓冲区大小，0表示使用操作系统默认值
+     */
+    private int sendBufferSize;
+    private int receiveBufferSize;
+    private int backlog = 256;
+
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup ioGroup;
+    private ByteBufAllocator allocator;
+
+    /**
+     * @description 进程内默认共享的传输资源，ChannelProvider和NettyServer默认使用它
+     * @return [com.szq.rpc.transport.netty.TransportResources]
+     */
+    public static TransportResources shared() {
+        return SHARED;
+    }
+
+    public synchronized void setAcceptorThreads(int acceptorThreads) {
+        checkPositive("acceptorThreads", acceptorThreads);
+        this.acceptorThreads = acceptorThreads;
+    }
+
+    public synchronized int getAcceptorThreads() {
+        return acceptorThreads;
+    }
+
+    public synchronized void setIoThreads(int ioThreads) {
+        checkPositive("ioThreads", ioThreads);
+        this.ioThreads = ioThreads;
+    }
+
+    /**
+     * @description 设置池化分配器，优先分配直接内存还是堆内存，以及arena数量(0为默认值)
+     * @param directBuffers, arenas
+     * @return [void]
+     */
+    public synchronized void setAllocator(boolean directBuffers, int arenas) {
+        if (arenas < 0) {
+            throw new IllegalArgumentException("arenas: " + arenas);
+        }
+        this.directBuffers = directBuffers;
+        this.arenas = arenas;
+    }
+
+    public synchronized void setWriteBufferWaterMark(int low, int high) {
+        //构造一次以校验参数
+        new WriteBufferWaterMark(low, high);
+        this.writeBufferLowWaterMark = low;
+        this.writeBufferHighWaterMark = high;
+    }
+
+    /**
+     * @description 设置socket发送/接收缓冲区大小(字节)，0表示使用操作系统默认值
+     * @param sendBufferSize, receiveBufferSize
+     * @return [void]
+     */
+    public synchronized void setSocketBufferSizes(int sendBufferSize, int receiveBufferSize) {
+        if (sendBufferSize < 0 || receiveBufferSize < 0) {
+            throw new IllegalArgumentException("sendBufferSize: " + sendBufferSize + ", receiveBufferSize: " + receiveBufferSize);
+        }
+        this.sendBufferSize = sendBufferSize;
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    public synchronized void setBacklog(int backlog) {
+        checkPositive("backlog", backlog);
+        this.backlog = backlog;
+    }
+
+    public synchronized EventLoopGroup bossGroup() {
+        if (bossGroup == null) {
+            bossGroup = NettyTransport.current().newEventLoopGroup(acceptorThreads, "rpc-boss");
+        }
+        return bossGroup;
+    }
+
+    public synchronized EventLoopGroup ioGroup() {
+        if (ioGroup == null) {
+            logger.info("创建I/O线程组: {}个线程", ioThreads);
+            ioGroup = NettyTransport.current().newEventLoopGroup(ioThreads, "rpc-io");
+        }
+        return ioGroup;
+    }
+
+    public synchronized ByteBufAllocator allocator() {
+        if (allocator == null) {
+            int heapArenas = !directBuffers && arenas > 0 ? arenas : PooledByteBufAllocator.defaultNumHeapArena();
+            int directArenas = directBuffers && arenas > 0 ? arenas : PooledByteBufAllocator.defaultNumDirectArena();
+            //线程缓存大小沿用Netty的默认值(可由io.netty.allocator.*系统属性调整)，directMemoryCacheAlignment同样取默认值
+            allocator = new PooledByteBufAllocator(directBuffers, heapArenas, directArenas,
+                    PooledByteBufAllocator.defaultPageSize(), PooledByteBufAllocator.defaultMaxOrder(),
+                    PooledByteBufAllocator.defaultTinyCacheSize(), PooledByteBufAllocator.defaultSmallCacheSize(),
+                    PooledByteBufAllocator.defaultNormalCacheSize(), PooledByteBufAllocator.defaultUseCacheForAllThreads());
+        }
+        return allocator;
+    }
+
+    /**
+     * @description 设置客户端连接的分配器和缓冲区参数
+     * @param bootstrap
+     * @return [void]
+     */
+    public synchronized void applyClientOptions(Bootstrap bootstrap) {
+        bootstrap.option(ChannelOption.ALLOCATOR, allocator())
+                .option(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(writeBufferLowWaterMark, writeBufferHighWaterMark));
+        if (sendBufferSize > 0) {
+            bootstrap.option(ChannelOption.SO_SNDBUF, sendBufferSize);
+        }
+        if (receiveBufferSize > 0) {
+            bootstrap.option(ChannelOption.SO_RCVBUF, receiveBufferSize);
+        }
+    }
+
+    /**
+     * @description 设置服务端监听Channel及其子连接的分配器和缓冲区参数
+     * @param serverBootstrap
+     * @return [void]
+     */
+    public synchronized void applyServerOptions(ServerBootstrap serverBootstrap) {
+        serverBootstrap.option(ChannelOption.SO_BACKLOG, backlog)
+                .option(ChannelOption.ALLOCATOR, allocator())
+                .childOption(ChannelOption.ALLOCATOR, allocator())
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(writeBufferLowWaterMark, writeBufferHighWaterMark));
+        if (sendBufferSize > 0) {
+            serverBootstrap.childOption(ChannelOption.SO_SNDBUF, sendBufferSize);
+        }
+        if (receiveBufferSize > 0) {
+            //接收缓冲区需设置在监听socket上，超过64KB时窗口扩大选项才能在握手时协商
+            serverBootstrap.option(ChannelOption.SO_RCVBUF, receiveBufferSize);
+        }
+    }
+
+    /**
+     * @description 优雅关闭所有EventLoopGroup并等待其线程退出，之后再次使用会重新创建
+     * @return [void]
+     */
+    public void shutdown() {
+        EventLoopGroup boss;
+        EventLoopGroup io;
+        synchronized (this) {
+            boss = bossGroup;
+            io = ioGroup;
+            bossGroup = null;
+            ioGroup = null;
+        }
+        if (boss != null) {
+            boss.shutdownGracefully().syncUninterruptibly();
+        }
+        if (io != null) {
+            io.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    private static void checkPositive(String name, int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException(name + ": " + value);
+        }
+    }
+}
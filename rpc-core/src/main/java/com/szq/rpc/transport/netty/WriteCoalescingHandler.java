@@ -0,0 +1,125 @@
+package com.szq.rpc.transport.netty;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Ashur
+ * @description 合并flush：writeAndFlush()的写操作照常进入出站缓冲区，flush则攒批后再真正执行，减少write系统调用次数
+ * 满足任一条件时立即flush：攒够maxBatch次flush；读循环结束(channelReadComplete)；
+ * 否则在第一次被推迟的flush之后latencyBudget时间内由EventLoop定时flush，单个消息的额外延迟不超过该时间。
+ * latencyBudget为0时不使用定时器，而是在EventLoop执行完当前已排队的任务后flush，合并同一轮中提交的所有写；
+ * NIO的定时任务精度约为1毫秒，延迟敏感的场景建议使用0。
+ * 必须放在pipeline最前面(最靠近socket)，才能拦截到所有出站处理器的flush；每个Channel一个实例
+ */
+public class WriteCoalescingHandler extends ChannelDuplexHandler {
+
+    private final int maxBatch;
+    private final long latencyBudgetNanos;
+    /**
+     * 以下状态只在Channel所属的EventLoop线程上访问，无需同步
+     */
+    private int pendingFlushes;
+    private boolean readInProgress;
+    private Future<?> scheduledFlush;
+    private ChannelHandlerContext ctx;
+    private final Runnable flushTask = () -> {
+        scheduledFlush = null;
+        if (pendingFlushes > 0) {
+            flushNow(ctx);
+        }
+    };
+
+    /**
+     * @param maxBatch 最多攒多少次flush后立即执行
+     * @param latencyBudgetMicros 被推迟的flush最多等待的时间(微秒)
+     */
+    public WriteCoalescingHandler(int maxBatch, long latencyBudgetMicros) {
+        if (maxBatch < 1 || latencyBudgetMicros < 0) {
+            throw new IllegalArgumentException("maxBatch: " + maxBatch + ", latencyBudgetMicros: " + latencyBudgetMicros);
+        }
+        this.maxBatch = maxBatch;
+        this.latencyBudgetNanos = TimeUnit.MICROSECONDS.toNanos(latencyBudgetMicros);
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        if (++pendingFlushes >= maxBatch) {
+            flushNow(ctx);
+        } else if (!readInProgress && scheduledFlush == null) {
+            //读循环中产生的写(如服务端在I/O线程上直接处理的请求)等到channelReadComplete统一flush
+            scheduledFlush = latencyBudgetNanos == 0
+                    ? ctx.executor().submit(flushTask)
+                    : ctx.executor().schedule(flushTask, latencyBudgetNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        readInProgress = true;
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) {
+        readInProgress = false;
+        flushIfNeeded(ctx);
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        //出站缓冲区超过高水位时尽快写出
+        if (!ctx.channel().isWritable()) {
+            flushIfNeeded(ctx);
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        flushIfNeeded(ctx);
+        ctx.fireExceptionCaught(cause);
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) {
+        flushIfNeeded(ctx);
+        ctx.disconnect(promise);
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
+        flushIfNeeded(ctx);
+        ctx.close(promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        flushIfNeeded(ctx);
+    }
+
+    private void flushIfNeeded(ChannelHandlerContext ctx) {
+        if (pendingFlushes > 0) {
+            flushNow(ctx);
+        }
+    }
+
+    private void flushNow(ChannelHandlerContext ctx) {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        pendingFlushes = 0;
+        ctx.flush();
+    }
+}
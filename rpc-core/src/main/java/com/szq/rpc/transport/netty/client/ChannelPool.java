@@ -0,0 +1,322 @@
+package com.szq.rpc.transport.netty.client;
+
+import com.szq.rpc.entity.RpcResponse;
+import com.szq.rpc.enumertaion.RpcError;
+import com.szq.rpc.exception.RpcException;
+import com.szq.rpc.serializer.CommonSerializer;
+import com.szq.rpc.transport.netty.NettyTransport;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.util.AttributeKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Ashur
+ * @description 同一服务端地址（及序列化器）的连接池
+ * 一个连接只绑定一个EventLoop线程，多核客户端上单连接的吞吐受限于一个I/O线程，因此每个端点维护[minSize, maxSize]条连接。
+ * 连接全部异步建立：池中连接数少于minSize，或所有连接上都有未完成的请求且未达到maxSize时，在后台再建立一条连接，当前调用仍使用已有连接。
+ * 连接断开时由NettyClientHandler.channelInactive回调从池中移除
+ */
+public class ChannelPool {
+    private static final Logger logger = LoggerFactory.getLogger(ChannelPool.class);
+
+    /**
+     * 连接所属的连接池，用于连接断开时将其移出
+     */
+    static final AttributeKey<ChannelPool> POOL = AttributeKey.valueOf("channelPool");
+    /**
+     * 连接上尚未完成的请求数
+     */
+    static final AttributeKey<AtomicInteger> PENDING = AttributeKey.valueOf("pendingRequests");
+    /**
+     * 连接上允许的未完成请求数许可，限制出站缓冲区的增长，未设置上限时为空
+     */
+    static final AttributeKey<Semaphore> PERMITS = AttributeKey.valueOf("inFlightPermits");
+
+    /**
+     * 连接失败后的首次退避时间以及退避上限
+     */
+    private static final long BACKOFF_BASE_MILLIS = 100;
+    private static final long BACKOFF_MAX_MILLIS = 10000;
+
+    /**
+     * 连接选择策略
+     */
+    public enum Strategy {
+        /**
+         * 选择未完成请求数最少的连接
+         */
+        LEAST_PENDING,
+        /**
+         * 依次轮询
+         */
+        ROUND_ROBIN
+    }
+
+    private final InetSocketAddress address;
+    private final CommonSerializer serializer;
+    private final int minSize;
+    private final int maxSize;
+    private final Strategy strategy;
+    private final int maxInFlight;
+    /**
+     * 读多写少，遍历时无需加锁
+     */
+    private final CopyOnWriteArrayList<Channel> channels = new CopyOnWriteArrayList<>();
+    /**
+     * 同一时刻只允许一个后台扩容连接
+     */
+    private final AtomicBoolean growing = new AtomicBoolean();
+    private final AtomicInteger roundRobin = new AtomicInteger();
+    /**
+     * 进行中的首次连接，等待的调用方都挂在这一个future上
+     */
+    private CompletableFuture<Channel> connecting;
+    /**
+     * 连续失败次数以及下次允许连接的时间，由this加锁保护，读取时容忍短暂的过期值
+     */
+    private volatile int failures;
+    private volatile long nextAttemptNanos;
+
+    ChannelPool(InetSocketAddress address, CommonSerializer serializer, int minSize, int maxSize, Strategy strategy, int maxInFlight) {
+        this.address = address;
+        this.serializer = serializer;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.strategy = strategy;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * @description 从池中取一条可用连接
+     * 池中有可用连接时返回已完成的future；池为空时所有调用方共享同一次进行中的连接（single-flight），
+     * 连接失败后按指数退避，退避期内直接返回失败的future，避免服务端重启后大量调用方同时重连
+     * @return [java.util.concurrent.CompletableFuture<io.netty.channel.Channel>]
+     */
+    CompletableFuture<Channel> acquire(){
+        Channel channel = select();
+        if (channel == null){
+            return connectFirst();
+        }
+        int size = channels.size();
+        if (size < minSize || (size < maxSize && pendingOf(channel) > 0)){
+            grow();
+        }
+        return CompletableFuture.completedFuture(channel);
+    }
+
+    private synchronized CompletableFuture<Channel> connectFirst(){
+        Channel channel = select();
+        if (channel != null){
+            return CompletableFuture.completedFuture(channel);
+        }
+        if (connecting != null){
+            return connecting;
+        }
+        long wait = nextAttemptNanos - System.nanoTime();
+        if (failures > 0 && wait > 0){
+            CompletableFuture<Channel> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new RpcException(RpcError.CLIENT_CONNECT_SERVER_FAILURE,
+                    address + "，" + TimeUnit.NANOSECONDS.toMillis(wait) + "ms后重试"));
+            return failed;
+        }
+        CompletableFuture<Channel> promise = new CompletableFuture<>();
+        connecting = promise;
+        ChannelProvider.connectAsync(address, serializer).addListener((ChannelFutureListener) future -> {
+            synchronized (this){
+                connecting = null;
+                if (future.isSuccess()){
+                    connected();
+                    add(future.channel());
+                }else {
+                    connectFailed(future.cause());
+                }
+            }
+            if (future.isSuccess()){
+                promise.complete(future.channel());
+            }else {
+                RpcException e = new RpcException(RpcError.CLIENT_CONNECT_SERVER_FAILURE.getMessage() + ":" + address, future.cause());
+                promise.completeExceptionally(e);
+            }
+        });
+        return promise;
+    }
+
+    /**
+     * @description 连接成功，清空退避状态
+     * @return [void]
+     */
+    private synchronized void connected(){
+        failures = 0;
+        nextAttemptNanos = 0;
+    }
+
+    /**
+     * @description 连接失败，退避时间从BACKOFF_BASE_MILLIS开始逐次翻倍，最长BACKOFF_MAX_MILLIS
+     * @param cause
+     * @return [void]
+     */
+    private synchronized void connectFailed(Throwable cause){
+        failures++;
+        long backoff = Math.min(BACKOFF_MAX_MILLIS, BACKOFF_BASE_MILLIS << Math.min(failures - 1, 16));
+        nextAttemptNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff);
+        logger.error("连接 {} 失败，第{}次，{}ms内不再重试", address, failures, backoff, cause);
+    }
+
+    private Channel select(){
+        Object[] snapshot = channels.toArray();
+        int size = snapshot.length;
+        if (size == 0){
+            return null;
+        }
+        if (strategy == Strategy.ROUND_ROBIN){
+            int start = roundRobin.getAndIncrement() & Integer.MAX_VALUE;
+            for (int i = 0; i < size; i++) {
+                Channel channel = (Channel) snapshot[(start + i) % size];
+                if (channel.isActive()){
+                    return channel;
+                }
+            }
+            return null;
+        }
+        Channel best = null;
+        int bestPending = Integer.MAX_VALUE;
+        for (Object o : snapshot) {
+            Channel channel = (Channel) o;
+            if (!channel.isActive()){
+                continue;
+            }
+            int pending = pendingOf(channel);
+            if (pending < bestPending){
+                best = channel;
+                bestPending = pending;
+                if (pending == 0){
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @description 在后台异步建立一条新连接，成功后加入池中
+     * @return [void]
+     */
+    private void grow(){
+        if (failures > 0 && nextAttemptNanos - System.nanoTime() > 0){
+            return;
+        }
+        if (!growing.compareAndSet(false, true)){
+            return;
+        }
+        ChannelProvider.connectAsync(address, serializer).addListener((ChannelFutureListener) future -> {
+            try {
+                if (future.isSuccess()){
+                    connected();
+                    if (channels.size() < maxSize){
+                        add(future.channel());
+                    }else {
+                        future.channel().close();
+                    }
+                }else {
+                    connectFailed(future.cause());
+                }
+            }finally {
+                growing.set(false);
+            }
+        });
+    }
+
+    private void add(Channel channel){
+        channel.attr(PENDING).set(new AtomicInteger());
+        if (maxInFlight > 0){
+            channel.attr(PERMITS).set(new Semaphore(maxInFlight));
+        }
+        channel.attr(POOL).set(this);
+        channels.add(channel);
+        logger.info("连接池 {} 新增连接，当前连接数 {}", address, channels.size());
+        //连接在加入前已断开时，channelInactive已经错过，这里补一次移除
+        if (!channel.isActive()){
+            remove(channel);
+        }
+    }
+
+    void remove(Channel channel){
+        if (channels.remove(channel)){
+            logger.info("连接池 {} 移除连接，当前连接数 {}", address, channels.size());
+        }
+    }
+
+    /**
+     * @description 当前线程是否不允许阻塞等待许可：所选连接的EventLoop线程上阻塞会使许可永远无法归还，
+     * 其他EventLoop线程上阻塞会拖住它负责的所有连接，请求超时所用的时间轮线程上阻塞会推迟所有请求的超时处理(对冲请求在其上发出)
+     * @param channel
+     * @return [boolean]
+     */
+    private static boolean mustNotBlock(Channel channel){
+        return channel.eventLoop().inEventLoop() || NettyTransport.inEventLoopThread() || UnprocessedRequests.inTimerThread();
+    }
+
+    private static int pendingOf(Channel channel){
+        AtomicInteger pending = channel.attr(PENDING).get();
+        return pending == null ? 0 : pending.get();
+    }
+
+    /**
+     * @description 占用连接上的一个请求许可并记录未完成请求，请求结束（响应、超时或失败）时自动归还
+     * 许可用完时，maxWaitMillis大于0且当前线程允许阻塞则最多等待maxWaitMillis，否则立即返回false；
+     * 返回false时不会记录该请求，调用方应让请求失败
+     * @param channel, future, maxWaitMillis
+     * @return [boolean]
+     */
+    static boolean trackPending(Channel channel, CompletableFuture<RpcResponse> future, long maxWaitMillis){
+        Semaphore permits = channel.attr(PERMITS).get();
+        if (permits != null && !permits.tryAcquire()){
+            if (maxWaitMillis <= 0 || mustNotBlock(channel)){
+                return false;
+            }
+            try {
+                if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)){
+                    return false;
+                }
+            }catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        AtomicInteger pending = channel.attr(PENDING).get();
+        if (pending != null){
+            pending.incrementAndGet();
+        }
+        future.whenComplete((response, throwable) -> {
+            if (pending != null){
+                pending.decrementAndGet();
+            }
+            if (permits != null){
+                permits.release();
+            }
+        });
+        return true;
+    }
+
+    /**
+     * @description 连接断开时将其从所属连接池中移除
+     * @param channel
+     * @return [void]
+     */
+    static void evict(Channel channel){
+        ChannelPool pool = channel.attr(POOL).get();
+        if (pool != null){
+            pool.remove(channel);
+        }
+    }
+}
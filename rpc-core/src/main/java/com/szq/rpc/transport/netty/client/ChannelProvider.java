@@ -2,21 +2,23 @@ package com.szq.rpc.transport.netty.client;
 
 import com.szq.rpc.codec.CommonDecoder;
 import com.szq.rpc.codec.CommonEncoder;
+import com.szq.rpc.codec.ProtocolConstants;
+import com.szq.rpc.codec.RpcFrameDecoder;
+import com.szq.rpc.compress.Compressor;
 import com.szq.rpc.enumertaion.RpcError;
 import com.szq.rpc.exception.RpcException;
 import com.szq.rpc.serializer.CommonSerializer;
+import com.szq.rpc.transport.netty.NettyTransport;
+import com.szq.rpc.transport.netty.TransportResources;
+import com.szq.rpc.transport.netty.WriteCoalescingHandler;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
-
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.timeout.IdleStateHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
-import java.util.Date;
 import java.util.Map;
 import java.util.concurrent.*;
 
@@ -26,19 +28,44 @@ import java.util.concurrent.*;
  */
 public class ChannelProvider {
     private static final Logger logger = LoggerFactory.getLogger(ChannelProvider.class);
-    private static EventLoopGroup eventLoopGroup;
     private static Bootstrap bootstrap = initializeBootstrap();
 
     /**
-     * 所有客户端Channel都保存在该Map中
+     * 每个服务端地址（及序列化器）对应一个连接池
+     */
+    private static Map<String, ChannelPool> pools = new ConcurrentHashMap<>();
+    private static volatile int minPoolSize = 1;
+    /**
+     * 默认每个端点最多与CPU核数相同的连接，使请求能分散到多个I/O线程上
+     */
+    private static volatile int maxPoolSize = Runtime.getRuntime().availableProcessors();
+    private static volatile ChannelPool.Strategy poolStrategy = ChannelPool.Strategy.LEAST_PENDING;
+    /**
+     * 每条连接上未完成请求数的上限(小于等于0表示不限制)，以及达到上限时调用线程最多等待的时间(毫秒，0表示立即失败)
+     * 服务端处理变慢时请求会堆积在出站缓冲区和请求集合中，限制在途请求数避免客户端内存无限增长
+     */
+    private static volatile int maxInFlightPerChannel = 4096;
+    private static volatile long inFlightWaitMillis;
+    /**
+     * 合并flush的批大小和延迟上限(微秒)，批大小小于等于1时不启用
      */
-    private static Map<String, Channel> channels = new ConcurrentHashMap<>();
+    private static volatile int flushBatchSize = 1;
+    private static volatile long flushLatencyMicros;
+    /**
+     * 请求聚合的批大小和等待窗口(微秒)，批大小小于等于1时不启用
+     */
+    private static volatile int requestBatchSize = 1;
+    /**
+     * 请求体的压缩算法(为null时不压缩)及压缩阈值(字节)
+     */
+    private static volatile Compressor compressor;
+    private static volatile int compressionThreshold = ProtocolConstants.DEFAULT_COMPRESSION_THRESHOLD;
+    private static volatile long requestBatchWindowMicros;
 
     private static Bootstrap initializeBootstrap() {
-        eventLoopGroup = new NioEventLoopGroup();
+        //Linux上自动使用原生epoll，不可用时回退到NIO；EventLoopGroup在每次连接时从TransportResources获取
         Bootstrap bootstrap = new Bootstrap();
-        bootstrap.group(eventLoopGroup)
-                .channel(NioSocketChannel.class)
+        bootstrap.channel(NettyTransport.current().socketChannelClass())
                 //连接的超时时间，超过这个时间还是建立不上则代表连接失败
                 .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 5000)
                 //启动该功能时，TCP会主动探测空闲连接的有效性。可以将此功能视为TCP的心跳机制，默认的心跳间隔是7200s即两小时。
@@ -49,59 +76,127 @@ public class ChannelProvider {
         return bootstrap;
     }
 
-    public static Channel get(InetSocketAddress inetSocketAddress, CommonSerializer serializer){
-        String key = inetSocketAddress.toString() + serializer.getCode();
-        if (channels.containsKey(key)){
-            Channel channel = channels.get(key);
-            if (channel != null && channel.isActive()){
-                return channel;
-            } else {
-                channels.remove(key);
-            }
+    /**
+     * @description 设置每个端点的连接数范围，只对之后新建的连接池生效
+     * @param minSize, maxSize
+     * @return [void]
+     */
+    public static void setPoolSize(int minSize, int maxSize){
+        if (minSize < 1 || maxSize < minSize){
+            throw new IllegalArgumentException("连接池大小不合法: min=" + minSize + ", max=" + maxSize);
         }
+        minPoolSize = minSize;
+        maxPoolSize = maxSize;
+    }
 
+    /**
+     * @description 设置连接池中的连接选择策略，只对之后新建的连接池生效
+     * @param strategy
+     * @return [void]
+     */
+    public static void setPoolStrategy(ChannelPool.Strategy strategy){
+        poolStrategy = strategy;
+    }
 
-        bootstrap.handler(new ChannelInitializer<SocketChannel>() {
+    /**
+     * @description 设置每条连接上未完成请求数的上限，只对之后新建的连接生效
+     * @param maxPerChannel 上限，小于等于0表示不限制
+     * @param maxWaitMillis 达到上限时调用线程最多等待的时间(毫秒)，0表示立即以RpcException(CLIENT_OVERLOADED)失败；
+     *                      在Netty的EventLoop线程或请求超时的时间轮线程上发起的调用总是立即失败
+     * @return [void]
+     */
+    public static void setMaxInFlight(int maxPerChannel, long maxWaitMillis){
+        maxInFlightPerChannel = maxPerChannel;
+        inFlightWaitMillis = maxWaitMillis;
+    }
 
-            @Override
-            protected void initChannel(SocketChannel ch) throws Exception {
-                ch.pipeline().addLast(new CommonEncoder(serializer))
-                        //设定IdleStateHandler心跳检测每5秒进行一次写检测，如果5秒内write()方法未被调用则触发一次userEventTrigger()方法
-                        //实现客户端每5秒向服务端发送一次消息
-                        .addLast(new IdleStateHandler(0,5, 0, TimeUnit.SECONDS))
-                        .addLast(new CommonDecoder())
-                        .addLast(new NettyClientHandler());
-            }
-        });
-        Channel channel = null;
-        try{
-          channel = connect(bootstrap, inetSocketAddress);
-        }catch (ExecutionException | InterruptedException e){
-            logger.error("获取Channel时有错误发生", e);
-            return null;
+    static long getInFlightWaitMillis(){
+        return inFlightWaitMillis;
+    }
+
+    /**
+     * @description 开启写合并：请求先写入缓冲区，攒够maxBatch个或等待latencyBudgetMicros后一次flush，只对之后新建的连接生效
+     * @param maxBatch 批大小，小于等于1表示关闭
+     * @param latencyBudgetMicros 单个请求因合并而增加的最大延迟(微秒)
+     * @return [void]
+     */
+    public static void setWriteCoalescing(int maxBatch, long latencyBudgetMicros){
+        flushBatchSize = maxBatch;
+        flushLatencyMicros = latencyBudgetMicros;
+    }
+
+    /**
+     * @description 开启请求体压缩，只压缩不小于threshold字节的请求体，只对之后新建的连接生效
+     * @param compressorCode Compressor中的算法编号，Compressor.NONE表示关闭
+     * @param threshold 压缩阈值(字节)
+     * @return [void]
+     */
+    public static void setCompression(int compressorCode, int threshold){
+        Compressor selected = Compressor.getByCode(compressorCode);
+        if (selected == null && compressorCode != Compressor.NONE){
+            throw new RpcException(RpcError.UNKNOWN_COMPRESSOR);
         }
-        channels.put(key, channel);
-        return channel;
+        compressor = selected;
+        compressionThreshold = threshold;
     }
+
     /**
-     * @description Netty客户端创建通道连接
-     * @param bootstrap, inetSocketAddress
+     * @description 开启请求聚合：同一连接上的请求攒够maxBatch个或等待windowMicros后合并为一个批量请求发出，只对之后新建的连接生效
+     * @param maxBatch 每批最多包含的请求数，小于等于1表示关闭
+     * @param windowMicros 第一个请求最多等待的时间(微秒)，0表示只合并EventLoop同一轮中提交的请求
      * @return [void]
      */
-    private static Channel connect(Bootstrap bootstrap, InetSocketAddress inetSocketAddress) throws ExecutionException, InterruptedException {
-        CompletableFuture<Channel> completableFuture = new CompletableFuture<>();
-        bootstrap.connect(inetSocketAddress).addListener((ChannelFutureListener) futuer ->{
-            if (futuer.isSuccess()){
-                logger.info("客户端连接成功");
-                completableFuture.complete(futuer.channel());
-            }else {
-                throw new IllegalStateException();
-            }
-        });
-        return completableFuture.get();
+    public static void setRequestBatching(int maxBatch, long windowMicros){
+        requestBatchSize = maxBatch;
+        requestBatchWindowMicros = windowMicros;
     }
 
+    /**
+     * @description 获取到指定服务端的连接，不阻塞调用线程
+     * 连接失败时future以RpcException结束；同一端点的并发调用只会发起一次连接
+     * @param inetSocketAddress, serializer
+     * @return [java.util.concurrent.CompletableFuture<io.netty.channel.Channel>]
+     */
+    public static CompletableFuture<Channel> get(InetSocketAddress inetSocketAddress, CommonSerializer serializer){
+        String key = inetSocketAddress.toString() + serializer.getCode();
+        ChannelPool pool = pools.computeIfAbsent(key,
+                k -> new ChannelPool(inetSocketAddress, serializer, minPoolSize, maxPoolSize, poolStrategy, maxInFlightPerChannel));
+        return pool.acquire();
+    }
 
+    /**
+     * @description 异步发起连接，每次连接使用克隆出的Bootstrap设置各自的处理器，并发连接之间互不干扰
+     * @param inetSocketAddress, serializer
+     * @return [io.netty.channel.ChannelFuture]
+     */
+    static ChannelFuture connectAsync(InetSocketAddress inetSocketAddress, CommonSerializer serializer){
+        //与服务端共用同一组I/O线程和内存分配器
+        TransportResources resources = TransportResources.shared();
+        Bootstrap connectBootstrap = bootstrap.clone(resources.ioGroup());
+        //传输参数在每次连接时读取，启动后修改的配置对新连接同样生效
+        resources.applyClientOptions(connectBootstrap);
+        NettyTransport.current().applyClientOptions(connectBootstrap);
+        return connectBootstrap.handler(new ChannelInitializer<SocketChannel>() {
 
+            @Override
+            protected void initChannel(SocketChannel ch) throws Exception {
+                if (flushBatchSize > 1) {
+                    //放在最前面，拦截所有出站处理器的flush
+                    ch.pipeline().addLast(new WriteCoalescingHandler(flushBatchSize, flushLatencyMicros));
+                }
+                ch.pipeline().addLast(new CommonEncoder(serializer, compressor, compressionThreshold))
+                        //设定IdleStateHandler心跳检测每5秒进行一次写检测，如果5秒内write()方法未被调用则触发一次userEventTrigger()方法
+                        //实现客户端每5秒向服务端发送一次消息
+                        .addLast(new IdleStateHandler(0,5, 0, TimeUnit.SECONDS))
+                        .addLast(new RpcFrameDecoder())
+                        .addLast(new CommonDecoder())
+                        .addLast(new NettyClientHandler());
+                if (requestBatchSize > 1) {
+                    //放在最后面，在编码之前拦截用户写出的请求
+                    ch.pipeline().addLast(new RequestBatchingHandler(requestBatchSize, requestBatchWindowMicros));
+                }
+            }
+        }).connect(inetSocketAddress);
+    }
 
 }
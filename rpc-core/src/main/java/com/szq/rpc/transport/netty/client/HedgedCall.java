@@ -0,0 +1,223 @@
+package com.szq.rpc.transport.netty.client;
+
+import com.szq.rpc.entity.RpcRequest;
+import com.szq.rpc.entity.RpcResponse;
+import com.szq.rpc.enumertaion.ResponseCode;
+import com.szq.rpc.enumertaion.RpcError;
+import com.szq.rpc.exception.RpcException;
+import com.szq.rpc.factory.SingletonFactory;
+import com.szq.rpc.transport.InvocationPolicy;
+import com.szq.rpc.util.RequestIdGenerator;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Ashur
+ * @description 一次幂等调用：可能向多个实例发出多份请求(尝试)，第一个有效响应生效
+ * 对冲：第一份请求发出后等待策略给出的时间(默认为该方法最近响应延迟的p95)仍未完成，再向另一个实例发一份；
+ * 重试：所有进行中的尝试都失败(或服务端繁忙)后，在剩余时间内换一个实例重试。
+ * 每份请求使用新的请求号，生效的响应改回原请求号后返回；其余尝试从UnprocessedRequests中取消，迟到的响应直接丢弃。
+ * 对冲和重试都要先从重试预算中取得令牌，预算不足时不再追加请求
+ */
+class HedgedCall implements TimerTask {
+    private static final Logger logger = LoggerFactory.getLogger(HedgedCall.class);
+
+    /**
+     * 为一份新请求选择实例时，最多查找几次以避开已经尝试过的实例
+     */
+    private static final int MAX_LOOKUPS = 3;
+
+    private final NettyClient client;
+    private final RpcRequest rpcRequest;
+    private final InvocationPolicy policy;
+    private final RetryBudget retryBudget;
+    private final UnprocessedRequests unprocessedRequests;
+    /**
+     * 整个调用的截止时间，为0表示不设超时
+     */
+    private final long deadlineNanos;
+    private final CompletableFuture<RpcResponse> resultFuture = new CompletableFuture<>();
+    /**
+     * 以下状态在本对象的锁内访问
+     */
+    private final List<Long> inFlight = new ArrayList<>(2);
+    private final List<InetSocketAddress> tried = new ArrayList<>(2);
+    private int retriesLeft;
+    private Timeout hedgeTimeout;
+
+    HedgedCall(NettyClient client, RpcRequest rpcRequest, long timeoutMillis, InvocationPolicy policy, RetryBudget retryBudget) {
+        this.client = client;
+        this.rpcRequest = rpcRequest;
+        this.policy = policy;
+        this.retryBudget = retryBudget;
+        this.unprocessedRequests = SingletonFactory.getInstance(UnprocessedRequests.class);
+        this.deadlineNanos = timeoutMillis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : 0;
+        this.retriesLeft = policy.getRetries();
+    }
+
+    CompletableFuture<RpcResponse> start() {
+        //每个调用向预算中存入一部分令牌，重试量因此与请求量成比例
+        retryBudget.deposit();
+        attempt();
+        long hedgeDelay = policy.hedgeDelayMillis();
+        if (hedgeDelay > 0 && !resultFuture.isDone() && (deadlineNanos == 0 || remainingMillis() > hedgeDelay)) {
+            Timeout timeout = UnprocessedRequests.newTimeout(this, hedgeDelay, TimeUnit.MILLISECONDS);
+            synchronized (this) {
+                hedgeTimeout = timeout;
+            }
+        }
+        return resultFuture;
+    }
+
+    /**
+     * 对冲定时任务：调用仍未完成时再发一份请求
+     */
+    @Override
+    public void run(Timeout timeout) {
+        if (!resultFuture.isDone() && retryBudget.tryWithdraw()) {
+            logger.debug("发出对冲请求: {}", rpcRequest.getRequestId());
+            attempt();
+        }
+    }
+
+    private void attempt() {
+        long timeoutMillis = 0;
+        if (deadlineNanos != 0) {
+            timeoutMillis = remainingMillis();
+            if (timeoutMillis <= 0) {
+                boolean idle;
+                synchronized (this) {
+                    idle = inFlight.isEmpty();
+                }
+                //已到截止时间且没有进行中的尝试，调用以超时结束
+                if (idle) {
+                    finish(null, new RpcException(RpcError.REQUEST_TIMEOUT, "requestId:" + rpcRequest.getRequestId()));
+                }
+                return;
+            }
+        }
+        RpcRequest copy = new RpcRequest(RequestIdGenerator.nextId(), rpcRequest.getInterfaceName(), rpcRequest.getMethodName(),
+                rpcRequest.getMethodId(), rpcRequest.getParameters(), rpcRequest.getParamTypes(), rpcRequest.getHeartBeat());
+        long requestId = copy.getRequestId();
+        CompletableFuture<RpcResponse> attemptFuture = new CompletableFuture<>();
+        synchronized (this) {
+            inFlight.add(requestId);
+        }
+        long startNanos = System.nanoTime();
+        attemptFuture.whenComplete((rpcResponse, cause) -> onComplete(requestId, startNanos, rpcResponse, cause));
+        InetSocketAddress inetSocketAddress;
+        try {
+            inetSocketAddress = select(copy);
+        } catch (RuntimeException e) {
+            attemptFuture.completeExceptionally(e);
+            return;
+        }
+        client.send(copy, inetSocketAddress, attemptFuture, timeoutMillis);
+    }
+
+    /**
+     * 尽量选择还没有尝试过的实例；只有一个实例可用时仍发往同一个实例。
+     * 只有第一次尝试可以作为熔断器的探测请求：对冲和重试的查找结果可能因实例已尝试过而被丢弃，丢弃的探测名额无法归还
+     */
+    private InetSocketAddress select(RpcRequest copy) {
+        boolean first;
+        synchronized (this) {
+            first = tried.isEmpty();
+        }
+        InetSocketAddress inetSocketAddress = null;
+        for (int i = 0; i < MAX_LOOKUPS; i++) {
+            inetSocketAddress = client.lookup(copy, first);
+            synchronized (this) {
+                if (!tried.contains(inetSocketAddress)) {
+                    break;
+                }
+            }
+        }
+        synchronized (this) {
+            tried.add(inetSocketAddress);
+        }
+        return inetSocketAddress;
+    }
+
+    private void onComplete(long requestId, long startNanos, RpcResponse rpcResponse, Throwable cause) {
+        synchronized (this) {
+            inFlight.remove(Long.valueOf(requestId));
+        }
+        if (cause instanceof CancellationException) {
+            //对冲中落败而被取消
+            return;
+        }
+        boolean busy = rpcResponse != null && rpcResponse.getStatusCode() != null
+                && rpcResponse.getStatusCode() == ResponseCode.SERVER_BUSY.getCode();
+        if (rpcResponse != null && !busy) {
+            policy.getLatencyTracker().record(System.nanoTime() - startNanos);
+            finish(rpcResponse, null);
+            return;
+        }
+        if (resultFuture.isDone()) {
+            return;
+        }
+        boolean othersInFlight;
+        boolean retry;
+        synchronized (this) {
+            othersInFlight = !inFlight.isEmpty();
+            retry = !othersInFlight && retriesLeft > 0 && (deadlineNanos == 0 || remainingMillis() > 0);
+            if (retry) {
+                retriesLeft--;
+            }
+        }
+        if (othersInFlight) {
+            //还有其他尝试在进行，由它们决定结果
+            return;
+        }
+        if (retry && retryBudget.tryWithdraw()) {
+            logger.warn("请求失败，换一个实例重试: {}", rpcRequest.getRequestId(), cause);
+            attempt();
+            return;
+        }
+        finish(rpcResponse, cause);
+    }
+
+    /**
+     * @description 以响应或异常结束调用，并取消其余仍在进行的尝试
+     * @param rpcResponse, cause
+     * @return [void]
+     */
+    private void finish(RpcResponse rpcResponse, Throwable cause) {
+        boolean completed;
+        if (rpcResponse != null) {
+            //调用方按原请求号校验响应
+            rpcResponse.setRequestId(rpcRequest.getRequestId());
+            completed = resultFuture.complete(rpcResponse);
+        } else {
+            completed = resultFuture.completeExceptionally(cause);
+        }
+        if (!completed) {
+            return;
+        }
+        List<Long> losers;
+        synchronized (this) {
+            losers = new ArrayList<>(inFlight);
+            inFlight.clear();
+            if (hedgeTimeout != null) {
+                hedgeTimeout.cancel();
+            }
+        }
+        for (long loser : losers) {
+            unprocessedRequests.cancel(loser);
+        }
+    }
+
+    private long remainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+    }
+}
@@ -1,28 +1,33 @@
 package com.szq.rpc.transport.netty.client;
 
 import com.szq.rpc.factory.SingletonFactory;
+import com.szq.rpc.loadbalancer.EndpointStats;
 import com.szq.rpc.loadbalancer.LoadBalancer;
 import com.szq.rpc.loadbalancer.RandomLoadBalancer;
 import com.szq.rpc.registry.NacosServiceDiscovery;
 import com.szq.rpc.registry.NacosServiceRegistry;
 import com.szq.rpc.registry.ServiceDiscovery;
 import com.szq.rpc.registry.ServiceRegistry;
+import com.szq.rpc.transport.InvocationPolicy;
 import com.szq.rpc.transport.RpcClient;
+import com.szq.rpc.entity.RpcBatchRequest;
 import com.szq.rpc.entity.RpcRequest;
 import com.szq.rpc.entity.RpcResponse;
 import com.szq.rpc.enumertaion.RpcError;
 import com.szq.rpc.exception.RpcException;
 import com.szq.rpc.serializer.CommonSerializer;
 import com.szq.rpc.transport.socket.RpcMessageChecker;
-import io.netty.bootstrap.Bootstrap;
+import com.szq.rpc.util.RequestIdGenerator;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.util.AttributeKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -43,18 +48,20 @@ import java.util.concurrent.atomic.AtomicReference;
 public class NettyClient implements RpcClient {
 
     private static final Logger logger = LoggerFactory.getLogger(NettyClient.class);
-    private static final EventLoopGroup group;
-    private static final Bootstrap bootstrap;
-    static {
-        group = new NioEventLoopGroup();
-        bootstrap = new Bootstrap();
-        bootstrap.group(group)
-                .channel(NioSocketChannel.class);
-    }
+
+    /**
+     * 默认请求超时时间（毫秒）
+     */
+    public static final long DEFAULT_TIMEOUT_MILLIS = 5000;
 
     private final CommonSerializer serializer;
     private final ServiceDiscovery serviceDiscovery;
     private final UnprocessedRequests unprocessedRequests;
+    private volatile long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    /**
+     * 幂等调用的重试和对冲共用的预算，默认不超过请求量的10%，每秒至少10次
+     */
+    private volatile RetryBudget retryBudget = new RetryBudget(10, 10);
     public NettyClient() {
         //以默认序列化器调用构造函数
         this(DEFAULT_SERIALIZER, new RandomLoadBalancer());
@@ -66,14 +73,48 @@ public class NettyClient implements RpcClient {
         this(serializerCode, new RandomLoadBalancer());
     }
     public NettyClient(Integer serializerCode, LoadBalancer loadBalancer){
-        serviceDiscovery = new NacosServiceDiscovery(loadBalancer);
+        this(serializerCode, new NacosServiceDiscovery(loadBalancer));
+    }
+    /**
+     * @description 使用指定的服务发现创建客户端，例如绕过Nacos直连固定地址
+     * @param serializerCode, serviceDiscovery
+     */
+    public NettyClient(Integer serializerCode, ServiceDiscovery serviceDiscovery){
+        this.serviceDiscovery = serviceDiscovery;
         serializer = CommonSerializer.getByCode(serializerCode);
         unprocessedRequests = SingletonFactory.getInstance(UnprocessedRequests.class);
     }
 
 
+    /**
+     * @description 设置本客户端的默认请求超时时间，小于等于0表示不设超时
+     * @param timeoutMillis
+     * @return [void]
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    @Override
+    public CommonSerializer getSerializer() {
+        return serializer;
+    }
+
     @Override
     public CompletableFuture<RpcResponse> sendRequest(RpcRequest rpcRequest) {
+        return sendRequest(rpcRequest, timeoutMillis);
+    }
+
+    /**
+     * @description 以指定的超时时间发送请求，超时后返回的future以RpcException(REQUEST_TIMEOUT)结束
+     * @param rpcRequest, timeoutMillis 小于等于0表示不设超时
+     * @return [java.util.concurrent.CompletableFuture<com.szq.rpc.entity.RpcResponse>]
+     */
+    public CompletableFuture<RpcResponse> sendRequest(RpcRequest rpcRequest, long timeoutMillis) {
         if (serializer == null) {
             logger.error("未设置序列化器");
             throw new RpcException(RpcError.SERIALIZER_NOT_FOUND);
@@ -81,31 +122,201 @@ public class NettyClient implements RpcClient {
         CompletableFuture<RpcResponse> resultFuture = new CompletableFuture<>();
         try {
             //从Nacos获取提供对应服务的服务端地址
-            InetSocketAddress inetSocketAddress = serviceDiscovery.lookupService(rpcRequest.getInterfaceName());
-            //创建Netty通道连接
-            Channel channel = ChannelProvider.get(inetSocketAddress, serializer);
-            if (!channel.isActive()) {
-                group.shutdownGracefully();
-                return null;
+            InetSocketAddress inetSocketAddress = serviceDiscovery.lookupTrackedService(rpcRequest);
+            send(rpcRequest, inetSocketAddress, resultFuture, timeoutMillis);
+        }catch (Exception e){
+            fail(rpcRequest.getRequestId(), resultFuture, e);
+        }
+        return resultFuture;
+    }
+
+    /**
+     * @description 幂等方法的调用：按策略在失败时换实例重试，并在响应超过p95延迟仍未返回时向另一个实例发出对冲请求，
+     * 先返回的响应生效，其余请求被取消；重试和对冲消耗本客户端的重试预算
+     * @param rpcRequest, timeoutMillis 整个调用(包括所有重试和对冲)的超时时间，小于等于0表示不设超时, policy
+     * @return [java.util.concurrent.CompletableFuture<com.szq.rpc.entity.RpcResponse>] 响应的请求号与rpcRequest相同
+     */
+    public CompletableFuture<RpcResponse> sendRequest(RpcRequest rpcRequest, long timeoutMillis, InvocationPolicy policy) {
+        if (serializer == null) {
+            logger.error("未设置序列化器");
+            throw new RpcException(RpcError.SERIALIZER_NOT_FOUND);
+        }
+        return new HedgedCall(this, rpcRequest, timeoutMillis, policy, retryBudget).start();
+    }
+
+    /**
+     * @description 设置重试预算：重试和对冲的数量不超过请求量的percent%，另外每秒至少允许minPerSecond次
+     * @param percent, minPerSecond
+     * @return [void]
+     */
+    public void setRetryBudget(int percent, int minPerSecond) {
+        this.retryBudget = new RetryBudget(percent, minPerSecond);
+    }
+
+    /**
+     * @description 为HedgedCall的一次尝试查找服务端，probe为true时可以占用半开服务端的探测名额
+     * @param rpcRequest, probe
+     * @return [java.net.InetSocketAddress]
+     */
+    InetSocketAddress lookup(RpcRequest rpcRequest, boolean probe) {
+        return probe ? serviceDiscovery.lookupTrackedService(rpcRequest) : serviceDiscovery.lookupService(rpcRequest);
+    }
+
+    /**
+     * @description 把请求发往指定的服务端，结果(包括发送失败)通过resultFuture返回
+     * @param rpcRequest, inetSocketAddress, resultFuture, timeoutMillis
+     * @return [void]
+     */
+    void send(RpcRequest rpcRequest, InetSocketAddress inetSocketAddress, CompletableFuture<RpcResponse> resultFuture, long timeoutMillis) {
+        long requestId = rpcRequest.getRequestId();
+        //将新请求放入未处理完的请求中，超时时间从这里开始计算，包含建立连接的时间
+        unprocessedRequests.put(requestId, resultFuture, timeoutMillis, EndpointStats.of(inetSocketAddress));
+        //从连接池中取一条连接，连接尚未建立时在连接完成后再发送，不阻塞调用线程
+        ChannelProvider.get(inetSocketAddress, serializer).whenComplete((channel, cause) -> {
+            if (cause != null) {
+                fail(requestId, resultFuture, cause);
+                return;
+            }
+            if (!ChannelPool.trackPending(channel, resultFuture, ChannelProvider.getInFlightWaitMillis())) {
+                reject(requestId, resultFuture, inetSocketAddress);
+                return;
             }
-            //将新请求放入未处理完的请求中
-            unprocessedRequests.put(rpcRequest.getRequestId(), resultFuture);
             //向服务端发请求，并设置监听，关于writeAndFlush()的具体实现可以参考：https://blog.csdn.net/qq_34436819/article/details/103937188
             channel.writeAndFlush(rpcRequest).addListener((ChannelFutureListener) future1 -> {
                 if (future1.isSuccess()) {
-                    logger.info(String.format("客户端发送消息：%s", rpcRequest.toString()));
+                    logger.info("客户端发送消息：{}", rpcRequest);
                 } else {
                     future1.channel().close();
-                    resultFuture.completeExceptionally(future1.cause());
-                    logger.error("发送消息时有错误发生: ", future1.cause());
+                    fail(requestId, resultFuture, future1.cause());
                 }
             });
-        }catch (Exception e){
-            //将请求从请求集合中移除
-            unprocessedRequests.remove(rpcRequest.getRequestId());
-            //interrupt()这里作用是给受阻塞的当前线程发出一个中断信号，让当前线程退出阻塞状态，好继续执行然后结束
-            Thread.currentThread().interrupt();
+        });
+    }
+
+    /**
+     * @description 流式调用：服务方法返回Iterator时，服务端按本端授予的额度分片推送元素，
+     * 返回的迭代器在消费过程中补充额度，timeoutMillis用作等待下一个元素的超时时间
+     * @param rpcRequest
+     * @return [com.szq.rpc.transport.netty.client.RpcStreamIterator<T>]
+     */
+    public <T> RpcStreamIterator<T> sendStreamRequest(RpcRequest rpcRequest) {
+        if (serializer == null) {
+            logger.error("未设置序列化器");
+            throw new RpcException(RpcError.SERIALIZER_NOT_FOUND);
         }
-        return resultFuture;
+        RpcStreamIterator<T> stream = new RpcStreamIterator<>(rpcRequest.getRequestId(), timeoutMillis);
+        UnprocessedStreams unprocessedStreams = SingletonFactory.getInstance(UnprocessedStreams.class);
+        //流式调用的结果不经EndpointStats反馈，不能占用熔断器的探测名额
+        InetSocketAddress inetSocketAddress = serviceDiscovery.lookupService(rpcRequest);
+        unprocessedStreams.put(stream);
+        ChannelProvider.get(inetSocketAddress, serializer).whenComplete((channel, cause) -> {
+            if (cause != null) {
+                unprocessedStreams.remove(rpcRequest.getRequestId());
+                stream.fail(cause);
+                return;
+            }
+            stream.bind(channel);
+            channel.writeAndFlush(rpcRequest).addListener((ChannelFutureListener) future1 -> {
+                if (future1.isSuccess()) {
+                    logger.info("客户端发送流式请求：{}", rpcRequest);
+                } else {
+                    future1.channel().close();
+                    unprocessedStreams.remove(rpcRequest.getRequestId());
+                    stream.fail(future1.cause());
+                }
+            });
+        });
+        return stream;
+    }
+
+    /**
+     * @description 显式批量调用：发往同一服务端的请求合并为一个RpcBatchRequest发送，服务端并行执行后一次返回
+     * 每个请求各自计时、各自完成，返回的future与requests一一对应
+     * @param requests
+     * @return [java.util.List<java.util.concurrent.CompletableFuture<com.szq.rpc.entity.RpcResponse>>]
+     */
+    public List<CompletableFuture<RpcResponse>> sendBatch(List<RpcRequest> requests) {
+        if (serializer == null) {
+            logger.error("未设置序列化器");
+            throw new RpcException(RpcError.SERIALIZER_NOT_FOUND);
+        }
+        List<CompletableFuture<RpcResponse>> resultFutures = new ArrayList<>(requests.size());
+        //按服务端地址分组，每个地址发送一个批量请求，组内记录的是请求在requests中的下标
+        Map<InetSocketAddress, List<Integer>> groups = new HashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            RpcRequest rpcRequest = requests.get(i);
+            CompletableFuture<RpcResponse> resultFuture = new CompletableFuture<>();
+            resultFutures.add(resultFuture);
+            try {
+                InetSocketAddress inetSocketAddress = serviceDiscovery.lookupTrackedService(rpcRequest);
+                unprocessedRequests.put(rpcRequest.getRequestId(), resultFuture, timeoutMillis, EndpointStats.of(inetSocketAddress));
+                groups.computeIfAbsent(inetSocketAddress, k -> new ArrayList<>()).add(i);
+            } catch (Exception e) {
+                fail(rpcRequest.getRequestId(), resultFuture, e);
+            }
+        }
+        for (Map.Entry<InetSocketAddress, List<Integer>> group : groups.entrySet()) {
+            InetSocketAddress inetSocketAddress = group.getKey();
+            List<Integer> indexes = group.getValue();
+            ChannelProvider.get(inetSocketAddress, serializer).whenComplete((channel, cause) -> {
+                if (cause != null) {
+                    failAll(indexes, requests, resultFutures, cause);
+                    return;
+                }
+                //超出连接在途上限的请求单独失败，其余请求照常发送
+                List<RpcRequest> admitted = new ArrayList<>(indexes.size());
+                List<Integer> admittedIndexes = new ArrayList<>(indexes.size());
+                for (int index : indexes) {
+                    RpcRequest rpcRequest = requests.get(index);
+                    if (ChannelPool.trackPending(channel, resultFutures.get(index), ChannelProvider.getInFlightWaitMillis())) {
+                        admitted.add(rpcRequest);
+                        admittedIndexes.add(index);
+                    } else {
+                        reject(rpcRequest.getRequestId(), resultFutures.get(index), inetSocketAddress);
+                    }
+                }
+                if (admitted.isEmpty()) {
+                    return;
+                }
+                channel.writeAndFlush(new RpcBatchRequest(RequestIdGenerator.nextId(), admitted)).addListener((ChannelFutureListener) future1 -> {
+                    if (future1.isSuccess()) {
+                        logger.info("客户端发送批量请求：{}个", admitted.size());
+                    } else {
+                        future1.channel().close();
+                        failAll(admittedIndexes, requests, resultFutures, future1.cause());
+                    }
+                });
+            });
+        }
+        return resultFutures;
+    }
+
+    private void failAll(List<Integer> indexes, List<RpcRequest> requests,
+                         List<CompletableFuture<RpcResponse>> resultFutures, Throwable cause){
+        for (int index : indexes) {
+            fail(requests.get(index).getRequestId(), resultFutures.get(index), cause);
+        }
+    }
+
+    /**
+     * @description 将请求从请求集合中移除，并以异常结束future，调用方不会无限期等待
+     * @param requestId, resultFuture, cause
+     * @return [void]
+     */
+    private void fail(long requestId, CompletableFuture<RpcResponse> resultFuture, Throwable cause){
+        unprocessedRequests.remove(requestId);
+        resultFuture.completeExceptionally(cause);
+        logger.error("发送请求时有错误发生: ", cause);
+    }
+
+    /**
+     * @description 连接的在途请求数已达上限，请求未发出即失败；这是本端的过载，不计为该服务端的失败
+     * @param requestId, resultFuture, inetSocketAddress
+     * @return [void]
+     */
+    private void reject(long requestId, CompletableFuture<RpcResponse> resultFuture, InetSocketAddress inetSocketAddress){
+        unprocessedRequests.discard(requestId);
+        resultFuture.completeExceptionally(new RpcException(RpcError.CLIENT_OVERLOADED, inetSocketAddress.toString()));
+        logger.warn("连接 {} 的在途请求数已达上限，请求{}未发出", inetSocketAddress, requestId);
     }
 }
\ No newline at end of file
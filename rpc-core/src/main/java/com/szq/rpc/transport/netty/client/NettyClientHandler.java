@@ -1,22 +1,20 @@
 package com.szq.rpc.transport.netty.client;
 
+import com.szq.rpc.entity.RpcBatchResponse;
 import com.szq.rpc.entity.RpcRequest;
 import com.szq.rpc.entity.RpcResponse;
+import com.szq.rpc.entity.RpcStreamChunk;
 import com.szq.rpc.factory.SingletonFactory;
-import com.szq.rpc.serializer.CommonSerializer;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.timeout.IdleState;
 import io.netty.handler.timeout.IdleStateEvent;
-import io.netty.util.AttributeKey;
 import io.netty.util.ReferenceCountUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.net.InetSocketAddress;
-
 /**
  * @author Ashur
  * @description 客户端Netty处理器
@@ -24,9 +22,11 @@ import java.net.InetSocketAddress;
 public class NettyClientHandler extends SimpleChannelInboundHandler<RpcResponse> {
     private static final Logger logger = LoggerFactory.getLogger(NettyClientHandler.class);
     private final UnprocessedRequests unprocessedRequests;
+    private final UnprocessedStreams unprocessedStreams;
 
     public NettyClientHandler(){
         unprocessedRequests = SingletonFactory.getInstance(UnprocessedRequests.class);
+        unprocessedStreams = SingletonFactory.getInstance(UnprocessedStreams.class);
     }
     @Override
     public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
@@ -34,7 +34,8 @@ public class NettyClientHandler extends SimpleChannelInboundHandler<RpcResponse>
             IdleState state = ((IdleStateEvent) evt).state();
             if (state == IdleState.WRITER_IDLE){
                 logger.info("发送心跳包[{}]", ctx.channel().remoteAddress());
-                Channel channel = ChannelProvider.get((InetSocketAddress) ctx.channel().remoteAddress(), CommonSerializer.getByCode(CommonSerializer.DEFAULT_SERIALIZER));
+                //心跳直接写在空闲的这条连接上，连接池中的每条连接各自保活
+                Channel channel = ctx.channel();
                 RpcRequest rpcRequest = new RpcRequest();
                 rpcRequest.setHeartBeat(true);
                 //设置一个Listener监测服务端是否接收到心跳包，如果接收到就代表对方在线，不用关闭Channel
@@ -45,17 +46,55 @@ public class NettyClientHandler extends SimpleChannelInboundHandler<RpcResponse>
         }
     }
 
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        //连接断开后立即移出连接池，不再被选中
+        ChannelPool.evict(ctx.channel());
+        //该连接上进行中的流式调用无法继续，以异常结束
+        unprocessedStreams.failAll(ctx.channel());
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof RpcBatchResponse) {
+            RpcBatchResponse batch = (RpcBatchResponse) msg;
+            logger.info("客户端接收到批量响应: {}，共{}个", batch.getRequestId(), batch.getResponses().size());
+            //批量响应中的每个子响应各自对应一个未处理完的请求
+            for (RpcResponse<?> response : batch.getResponses()) {
+                complete(response);
+            }
+            return;
+        }
+        if (msg instanceof RpcStreamChunk) {
+            unprocessedStreams.onChunk((RpcStreamChunk) msg);
+            return;
+        }
+        super.channelRead(ctx, msg);
+    }
+
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, RpcResponse msg) throws Exception {
         try {
-            logger.info(String.format("客户端接收到消息: %s", msg));
+            logger.info("客户端接收到消息: {}", msg);
             //将响应数据取出
-            unprocessedRequests.complete(msg);
+            complete(msg);
         }finally {
             ReferenceCountUtil.release(msg);
         }
     }
 
+    /**
+     * @description 普通响应交给对应的请求；流式调用在服务端失败时同样以普通响应返回，交给对应的流结束
+     * @param response
+     * @return [void]
+     */
+    private void complete(RpcResponse<?> response) {
+        if (!unprocessedStreams.onResponse(response)) {
+            unprocessedRequests.complete(response);
+        }
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
         logger.error("过程调用中有错误发生：");
@@ -0,0 +1,75 @@
+package com.szq.rpc.transport.netty.client;
+
+import com.szq.rpc.entity.RpcResponse;
+import com.szq.rpc.loadbalancer.EndpointStats;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * @author Ashur
+ * @description 一个等待响应的请求：结果future、对应的超时任务以及发往的服务端的调用统计
+ * 自身即为时间轮上的TimerTask，避免每个请求再额外创建一个任务对象
+ */
+class PendingRequest implements TimerTask {
+
+    final long requestId;
+    final CompletableFuture<RpcResponse> future;
+    /**
+     * 请求发往的服务端的调用统计，请求结束时把结果和延迟反馈给负载均衡；未指定服务端时为null
+     */
+    final EndpointStats stats;
+    final long startNanos;
+    /**
+     * 请求持有的熔断器探测名额(所属的半开轮次)，只有持有名额的请求的结果影响半开状态；不是探测请求时为0
+     */
+    final long probe;
+    /**
+     * 时间轮返回的句柄，请求提前完成时用来取消超时任务；未设置超时时为null
+     */
+    volatile Timeout timeout;
+
+    PendingRequest(long requestId, CompletableFuture<RpcResponse> future, EndpointStats stats) {
+        this.requestId = requestId;
+        this.future = future;
+        this.stats = stats;
+        this.startNanos = stats == null ? 0 : System.nanoTime();
+        this.probe = stats == null ? 0 : stats.begin();
+    }
+
+    /**
+     * @description 请求结束(收到响应、超时或失败)，只调用一次
+     * @param success 是否收到了服务端的响应
+     * @return [void]
+     */
+    void finish(boolean success){
+        cancelTimeout();
+        if (stats != null){
+            stats.end(System.nanoTime() - startNanos, success, probe);
+        }
+    }
+
+    /**
+     * @description 请求被主动取消，不把结果反馈给负载均衡和熔断器，归还持有的探测名额
+     * @return [void]
+     */
+    void cancel(){
+        cancelTimeout();
+        if (stats != null){
+            stats.cancel(probe);
+        }
+    }
+
+    void cancelTimeout(){
+        Timeout t = timeout;
+        if (t != null){
+            t.cancel();
+        }
+    }
+
+    @Override
+    public void run(Timeout timeout) {
+        UnprocessedRequests.expire(requestId);
+    }
+}
@@ -0,0 +1,119 @@
+package com.szq.rpc.transport.netty.client;
+
+import com.szq.rpc.entity.RpcBatchRequest;
+import com.szq.rpc.entity.RpcRequest;
+import com.szq.rpc.util.RequestIdGenerator;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Ashur
+ * @description 客户端请求聚合：同一条连接上短时间内写出的多个小请求合并为一个RpcBatchRequest，
+ * 服务端并行执行后以一个RpcBatchResponse返回，减少帧数和编解码次数。
+ * 攒够maxBatch个请求立即发出，否则在第一个请求之后window时间内由EventLoop发出；
+ * window为0时在EventLoop执行完当前已排队的任务后发出，合并同一轮中提交的所有请求。
+ * 只剩一个请求时仍按普通RpcRequest发送，心跳包不参与聚合。
+ * 必须放在pipeline最后面(最靠近用户)，才能在编码之前拦截到请求；每个Channel一个实例
+ */
+public class RequestBatchingHandler extends ChannelOutboundHandlerAdapter {
+
+    private final int maxBatch;
+    private final long windowNanos;
+    /**
+     * 以下状态只在Channel所属的EventLoop线程上访问，无需同步
+     */
+    private List<RpcRequest> requests = new ArrayList<>();
+    private List<ChannelPromise> promises = new ArrayList<>();
+    private Future<?> scheduledEmit;
+    private ChannelHandlerContext ctx;
+    private final Runnable emitTask = () -> {
+        scheduledEmit = null;
+        emit(ctx);
+    };
+
+    /**
+     * @param maxBatch 每批最多包含的请求数
+     * @param windowMicros 第一个请求最多等待的时间(微秒)
+     */
+    public RequestBatchingHandler(int maxBatch, long windowMicros) {
+        if (maxBatch < 2 || windowMicros < 0) {
+            throw new IllegalArgumentException("maxBatch: " + maxBatch + ", windowMicros: " + windowMicros);
+        }
+        this.maxBatch = maxBatch;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        if (!(msg instanceof RpcRequest) || Boolean.TRUE.equals(((RpcRequest) msg).getHeartBeat())) {
+            ctx.write(msg, promise);
+            return;
+        }
+        requests.add((RpcRequest) msg);
+        promises.add(promise);
+        if (requests.size() >= maxBatch) {
+            emit(ctx);
+        } else if (scheduledEmit == null) {
+            scheduledEmit = windowNanos == 0
+                    ? ctx.executor().submit(emitTask)
+                    : ctx.executor().schedule(emitTask, windowNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        //攒批中的请求由emit()自行flush，这里只放行其他消息的flush
+        ctx.flush();
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
+        emit(ctx);
+        ctx.close(promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        emit(ctx);
+    }
+
+    private void emit(ChannelHandlerContext ctx) {
+        if (scheduledEmit != null) {
+            scheduledEmit.cancel(false);
+            scheduledEmit = null;
+        }
+        if (requests.isEmpty()) {
+            return;
+        }
+        List<RpcRequest> batch = requests;
+        List<ChannelPromise> batchPromises = promises;
+        requests = new ArrayList<>();
+        promises = new ArrayList<>();
+        if (batch.size() == 1) {
+            ctx.writeAndFlush(batch.get(0), batchPromises.get(0));
+            return;
+        }
+        //批量请求写出成功或失败后，逐个通知每个子请求的写操作
+        ctx.writeAndFlush(new RpcBatchRequest(RequestIdGenerator.nextId(), batch)).addListener((ChannelFutureListener) future -> {
+            for (ChannelPromise promise : batchPromises) {
+                if (future.isSuccess()) {
+                    promise.trySuccess();
+                } else {
+                    promise.tryFailure(future.cause());
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,79 @@
+package com.szq.rpc.transport.netty.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Ashur
+ * @description 重试预算(令牌桶)：每个普通请求存入percent/100个令牌，每次重试或对冲取出一个，
+ * 另外每秒补充minPerSecond个，保证低流量时也能重试。桶中最多存放10秒的最低补充量(至少100个)。
+ * 服务端整体故障时所有请求都失败，重试量被限制在请求量的percent%以内，不会把流量放大数倍压垮服务端
+ */
+public class RetryBudget {
+
+    /**
+     * 令牌以千分之一为单位计数
+     */
+    private static final long UNIT = 1000;
+
+    private final long deposit;
+    private final long refillPerSecond;
+    private final long capacity;
+    private final AtomicLong balance;
+    private final AtomicLong lastRefillNanos = new AtomicLong(System.nanoTime());
+
+    /**
+     * @param percent 重试量占请求量的百分比上限, minPerSecond 每秒至少允许的重试次数
+     */
+    public RetryBudget(int percent, int minPerSecond) {
+        if (percent < 0 || minPerSecond < 0) {
+            throw new IllegalArgumentException("percent: " + percent + ", minPerSecond: " + minPerSecond);
+        }
+        this.deposit = percent * UNIT / 100;
+        this.refillPerSecond = minPerSecond * UNIT;
+        this.capacity = Math.max(100, minPerSecond * 10L) * UNIT;
+        this.balance = new AtomicLong(refillPerSecond);
+    }
+
+    public void deposit() {
+        add(deposit);
+    }
+
+    /**
+     * @description 取出一个令牌
+     * @return [boolean] 预算不足时返回false，此时不应重试
+     */
+    public boolean tryWithdraw() {
+        refill();
+        while (true) {
+            long current = balance.get();
+            if (current < UNIT) {
+                return false;
+            }
+            if (balance.compareAndSet(current, current - UNIT)) {
+                return true;
+            }
+        }
+    }
+
+    private void refill() {
+        long last = lastRefillNanos.get();
+        long now = System.nanoTime();
+        long elapsed = now - last;
+        if (refillPerSecond == 0 || elapsed < TimeUnit.MILLISECONDS.toNanos(1) || !lastRefillNanos.compareAndSet(last, now)) {
+            return;
+        }
+        //桶最多存放10秒的补充量，更长的间隔按10秒计算，避免乘法溢出
+        add(Math.min(elapsed, TimeUnit.SECONDS.toNanos(10)) * refillPerSecond / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private void add(long amount) {
+        while (true) {
+            long current = balance.get();
+            long next = Math.min(capacity, current + amount);
+            if (next == current || balance.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.szq.rpc.transport.netty.client;
+
+import com.szq.rpc.codec.ProtocolConstants;
+import com.szq.rpc.entity.RpcStreamChunk;
+import com.szq.rpc.entity.RpcStreamCredit;
+import com.szq.rpc.enumertaion.ResponseCode;
+import com.szq.rpc.enumertaion.RpcError;
+import com.szq.rpc.exception.RpcException;
+import com.szq.rpc.factory.SingletonFactory;
+import io.netty.channel.Channel;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Ashur
+ * @description 客户端的流式调用结果：接口方法声明返回Iterator时，代理返回本类的实例，调用方逐个取元素
+ * 收到的元素先放入队列，hasNext()在队列为空时阻塞等待下一个分片；每消费一半窗口就向服务端补充同样数量的额度，
+ * 因此本地缓存的元素数不超过ProtocolConstants.STREAM_WINDOW，几百万条记录也只占用有界的内存。
+ * 提前结束时调用close()通知服务端停止发送；迭代器只应由一个线程消费
+ * @param <T> 元素类型
+ */
+public class RpcStreamIterator<T> implements Iterator<T>, AutoCloseable {
+
+    /**
+     * 队列中的结束标记、null元素的占位以及失败原因
+     */
+    private static final Object END = new Object();
+    private static final Object NULL_ITEM = new Object();
+
+    private static final class Failure {
+        private final RpcException cause;
+
+        private Failure(RpcException cause) {
+            this.cause = cause;
+        }
+    }
+
+    private final long requestId;
+    private final long timeoutMillis;
+    private final LinkedBlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private final UnprocessedStreams unprocessedStreams;
+    private volatile Channel channel;
+    /**
+     * 以下状态只由消费线程访问
+     */
+    private Object next;
+    private boolean done;
+    private int consumed;
+
+    /**
+     * @param requestId 请求号
+     * @param timeoutMillis 等待下一个元素的最长时间，小于等于0表示一直等待
+     */
+    RpcStreamIterator(long requestId, long timeoutMillis) {
+        this.requestId = requestId;
+        this.timeoutMillis = timeoutMillis;
+        this.unprocessedStreams = SingletonFactory.getInstance(UnprocessedStreams.class);
+    }
+
+    long getRequestId() {
+        return requestId;
+    }
+
+    Channel getChannel() {
+        return channel;
+    }
+
+    void bind(Channel channel) {
+        this.channel = channel;
+    }
+
+    void onChunk(RpcStreamChunk chunk) {
+        if (chunk.getItems() != null) {
+            for (Object item : chunk.getItems()) {
+                queue.add(item == null ? NULL_ITEM : item);
+            }
+        }
+        if (Boolean.TRUE.equals(chunk.getEnd())) {
+            Integer code = chunk.getStatusCode();
+            if (code == null || code.equals(ResponseCode.SUCCESS.getCode())) {
+                queue.add(END);
+            } else {
+                queue.add(new Failure(new RpcException(RpcError.SERVICE_INVOCATION_FAILURE, chunk.getMessage())));
+            }
+        }
+    }
+
+    void fail(Throwable cause) {
+        queue.add(new Failure(cause instanceof RpcException ? (RpcException) cause
+                : new RpcException(RpcError.SERVICE_INVOCATION_FAILURE.getMessage(), cause)));
+    }
+
+    /**
+     * @description 队列为空时阻塞等待，超时或流以失败结束时抛出RpcException
+     * @return [boolean]
+     */
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        if (done) {
+            return false;
+        }
+        Object item;
+        try {
+            item = timeoutMillis > 0 ? queue.poll(timeoutMillis, TimeUnit.MILLISECONDS) : queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new RpcException(RpcError.SERVICE_INVOCATION_FAILURE.getMessage(), e);
+        }
+        if (item == null) {
+            close();
+            throw new RpcException(RpcError.REQUEST_TIMEOUT, "requestId:" + requestId);
+        }
+        if (item == END) {
+            done = true;
+            return false;
+        }
+        if (item instanceof Failure) {
+            done = true;
+            unprocessedStreams.remove(requestId);
+            throw ((Failure) item).cause;
+        }
+        next = item;
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Object item = next;
+        next = null;
+        //消费过半窗口时补充额度，服务端在额度用完之前就能收到，传输不会中断
+        if (++consumed >= ProtocolConstants.STREAM_WINDOW / 2) {
+            sendCredit(consumed, false);
+            consumed = 0;
+        }
+        return item == NULL_ITEM ? null : (T) item;
+    }
+
+    /**
+     * @description 提前结束流，通知服务端停止发送并释放其迭代器；流已结束时不做任何事
+     * @return [void]
+     */
+    @Override
+    public void close() {
+        if (done) {
+            return;
+        }
+        done = true;
+        next = null;
+        unprocessedStreams.remove(requestId);
+        sendCredit(0, true);
+        queue.clear();
+    }
+
+    private void sendCredit(int credits, boolean cancel) {
+        Channel current = channel;
+        if (current != null && current.isActive()) {
+            current.writeAndFlush(new RpcStreamCredit(requestId, credits, cancel));
+        }
+    }
+}
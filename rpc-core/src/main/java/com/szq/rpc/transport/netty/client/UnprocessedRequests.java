@@ -1,33 +1,193 @@
 package com.szq.rpc.transport.netty.client;
 
 import com.szq.rpc.entity.RpcResponse;
+import com.szq.rpc.enumertaion.RpcError;
+import com.szq.rpc.exception.RpcException;
+import com.szq.rpc.loadbalancer.EndpointStats;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.collection.LongObjectHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * @author Ashur
  * @description 未处理的请求（对所有客户端请求进行统一管理）
+ * 以long请求号为键，分段存放在开放寻址的LongObjectHashMap中：键不装箱、不哈希字符串；
+ * 请求号单调递增，按低位取模即可均匀落到各分段，每个分段只在极短的临界区内加锁，线程之间几乎没有竞争。
+ * 所有请求的超时由同一个HashedWheelTimer驱动，超时后以异常结束future并从表中移除，避免响应丢失时永久占用内存
  */
 public class UnprocessedRequests {
-    private static ConcurrentHashMap<String, CompletableFuture<RpcResponse>>  unprocessedRequests = new ConcurrentHashMap<>();
+    private static final Logger logger = LoggerFactory.getLogger(UnprocessedRequests.class);
+    /**
+     * 分段数，必须为2的幂
+     */
+    private static final int SEGMENT_COUNT = 64;
+    private static final int SEGMENT_MASK = SEGMENT_COUNT - 1;
+    private static final LongObjectHashMap<PendingRequest>[] segments = newSegments();
+    /**
+     * 时间轮每10ms推进一格，超时精度对RPC调用足够；使用守护线程，不阻止进程退出
+     */
+    private static final ThreadFactory timerThreadFactory = new DefaultThreadFactory("rpc-request-timeout", true);
+    private static volatile Thread timerThread;
+    private static final HashedWheelTimer timer = new HashedWheelTimer(r -> {
+        timerThread = timerThreadFactory.newThread(r);
+        return timerThread;
+    }, 10, TimeUnit.MILLISECONDS);
+    /**
+     * 超时请求计数
+     */
+    private static final LongAdder timeoutCount = new LongAdder();
 
-    public  void put(String requestId, CompletableFuture<RpcResponse> future){
-        unprocessedRequests.put(requestId, future);
+    @SuppressWarnings("unchecked")
+    private static LongObjectHashMap<PendingRequest>[] newSegments(){
+        LongObjectHashMap<PendingRequest>[] segments = new LongObjectHashMap[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new LongObjectHashMap<>();
+        }
+        return segments;
+    }
+
+    private static LongObjectHashMap<PendingRequest> segmentFor(long requestId){
+        return segments[(int) requestId & SEGMENT_MASK];
+    }
+
+    private static PendingRequest removePending(long requestId){
+        LongObjectHashMap<PendingRequest> segment = segmentFor(requestId);
+        synchronized (segment){
+            return segment.remove(requestId);
+        }
+    }
+
+    /**
+     * @description 登记一个等待响应的请求
+     * @param requestId, future, timeoutMillis 超时时间，小于等于0表示不设超时
+     * @return [void]
+     */
+    public void put(long requestId, CompletableFuture<RpcResponse> future, long timeoutMillis){
+        put(requestId, future, timeoutMillis, null);
+    }
+
+    /**
+     * @description 登记一个发往指定服务端的请求，请求结束时的延迟和结果计入该服务端的EndpointStats，
+     * 负载均衡(如P2cEwmaLoadBalancer)据此避开变慢的服务端
+     * @param requestId, future, timeoutMillis 超时时间，小于等于0表示不设超时, stats 服务端的调用统计，可为null
+     * @return [void]
+     */
+    public void put(long requestId, CompletableFuture<RpcResponse> future, long timeoutMillis, EndpointStats stats){
+        PendingRequest pending = new PendingRequest(requestId, future, stats);
+        LongObjectHashMap<PendingRequest> segment = segmentFor(requestId);
+        synchronized (segment){
+            segment.put(requestId, pending);
+        }
+        if (timeoutMillis > 0){
+            pending.timeout = timer.newTimeout(pending, timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @description 因发送失败等原因放弃请求，从集合中移除，计为该服务端的一次失败
+     * @param requestId
+     * @return [java.util.concurrent.CompletableFuture<com.szq.rpc.entity.RpcResponse>] 请求已结束时返回null
+     */
+    public CompletableFuture<RpcResponse> remove(long requestId){
+        PendingRequest pending = removePending(requestId);
+        if (pending == null){
+            return null;
+        }
+        pending.finish(false);
+        return pending.future;
     }
 
-    public void remove(String requestId){
-        unprocessedRequests.remove(requestId);
+    /**
+     * @description 请求未发出就在本端被拒绝(如连接的在途请求数已达上限)，从集合中移除；
+     * 与服务端无关，不计为服务端的失败，不计入延迟，归还持有的探测名额
+     * @param requestId
+     * @return [java.util.concurrent.CompletableFuture<com.szq.rpc.entity.RpcResponse>] 请求已结束时返回null
+     */
+    public CompletableFuture<RpcResponse> discard(long requestId){
+        PendingRequest pending = removePending(requestId);
+        if (pending == null){
+            return null;
+        }
+        pending.cancel();
+        return pending.future;
+    }
+
+    /**
+     * @description 主动取消请求(如对冲请求中落败的一方)：从集合中移除并以取消结束future，迟到的响应直接丢弃；
+     * 不计为服务端的失败
+     * @param requestId
+     * @return [boolean] 请求仍在集合中并被取消时返回true
+     */
+    public boolean cancel(long requestId){
+        PendingRequest pending = removePending(requestId);
+        if (pending == null){
+            return false;
+        }
+        pending.cancel();
+        pending.future.cancel(false);
+        return true;
     }
 
     public void complete(RpcResponse rpcResponse){
-        //请求完成了,把请求从未完成的请求中移除
-        CompletableFuture<RpcResponse> future = unprocessedRequests.remove(rpcResponse.getRequestId());
-        if (null != future){
+        //请求完成了,把请求从未完成的请求中移除，并把延迟反馈给负载均衡
+        PendingRequest pending = removePending(rpcResponse.getRequestId());
+        if (null != pending){
+            pending.finish(true);
             //把响应对象放入futuer中
-            future.complete(rpcResponse);
+            pending.future.complete(rpcResponse);
         }else {
-            throw new IllegalStateException();
+            //请求已超时或已被取消(对冲请求中落败的一方每次都会走到这里)，迟到的响应直接丢弃
+            logger.debug("收到未知、已超时或已取消请求的响应，requestId:{}", rpcResponse.getRequestId());
+        }
+    }
+
+    /**
+     * @description 在请求超时所用的时间轮上安排一个延时任务(如对冲请求)，精度为10ms
+     * @param task, delay, unit
+     * @return [io.netty.util.Timeout]
+     */
+    static Timeout newTimeout(TimerTask task, long delay, TimeUnit unit){
+        return timer.newTimeout(task, delay, unit);
+    }
+
+    /**
+     * @description 当前线程是否为时间轮的工作线程，该线程上的任务不应阻塞
+     * @return [boolean]
+     */
+    static boolean inTimerThread(){
+        return Thread.currentThread() == timerThread;
+    }
+
+    /**
+     * @description 时间轮回调：请求超时，以异常结束future
+     * @param requestId
+     * @return [void]
+     */
+    static void expire(long requestId){
+        PendingRequest pending = removePending(requestId);
+        if (pending == null){
+            return;
         }
+        pending.finish(false);
+        timeoutCount.increment();
+        logger.warn("请求超时，requestId:{}", requestId);
+        pending.future.completeExceptionally(new RpcException(RpcError.REQUEST_TIMEOUT, "requestId:" + requestId));
+    }
+
+    /**
+     * @description 累计超时的请求数
+     * @return [long]
+     */
+    public long getTimeoutCount(){
+        return timeoutCount.sum();
     }
 }
@@ -0,0 +1,78 @@
+package com.szq.rpc.transport.netty.client;
+
+import com.szq.rpc.entity.RpcResponse;
+import com.szq.rpc.entity.RpcStreamChunk;
+import com.szq.rpc.enumertaion.RpcError;
+import com.szq.rpc.exception.RpcException;
+import io.netty.channel.Channel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author Ashur
+ * @description 进行中的流式调用，与UnprocessedRequests相对应：按请求号把收到的分片交给对应的RpcStreamIterator
+ * 流式调用数量远少于普通请求，直接使用ConcurrentHashMap
+ */
+public class UnprocessedStreams {
+    private static final Logger logger = LoggerFactory.getLogger(UnprocessedStreams.class);
+
+    private static final Map<Long, RpcStreamIterator<?>> streams = new ConcurrentHashMap<>();
+
+    public void put(RpcStreamIterator<?> stream){
+        streams.put(stream.getRequestId(), stream);
+    }
+
+    public void remove(long requestId){
+        streams.remove(requestId);
+    }
+
+    /**
+     * @description 收到服务端的分片，最后一个分片到达后移除该流
+     * @param chunk
+     * @return [void]
+     */
+    public void onChunk(RpcStreamChunk chunk){
+        RpcStreamIterator<?> stream = Boolean.TRUE.equals(chunk.getEnd())
+                ? streams.remove(chunk.getRequestId())
+                : streams.get(chunk.getRequestId());
+        if (stream == null){
+            //调用方已经关闭了流，取消通知到达服务端之前发出的分片直接丢弃
+            logger.debug("收到未知流的分片，已丢弃: {}", chunk.getRequestId());
+            return;
+        }
+        stream.onChunk(chunk);
+    }
+
+    /**
+     * @description 流式方法没有返回迭代器时(方法抛出异常、找不到服务或方法、服务端繁忙等)，服务端回复的是普通响应，
+     * 以其状态码和原因作为最后一个分片结束对应的流，调用方不必等到超时
+     * @param rpcResponse
+     * @return [boolean] 是否为进行中的流式调用的响应
+     */
+    public boolean onResponse(RpcResponse<?> rpcResponse){
+        RpcStreamIterator<?> stream = streams.remove(rpcResponse.getRequestId());
+        if (stream == null){
+            return false;
+        }
+        stream.onChunk(new RpcStreamChunk(rpcResponse.getRequestId(), null, true,
+                rpcResponse.getStatusCode(), rpcResponse.getMessage()));
+        return true;
+    }
+
+    /**
+     * @description 连接断开时，该连接上的所有流以异常结束
+     * @param channel
+     * @return [void]
+     */
+    public void failAll(Channel channel){
+        for (RpcStreamIterator<?> stream : streams.values()) {
+            if (stream.getChannel() == channel){
+                streams.remove(stream.getRequestId());
+                stream.fail(new RpcException(RpcError.CLIENT_CONNECT_SERVER_FAILURE, "流式调用的连接已断开"));
+            }
+        }
+    }
+}
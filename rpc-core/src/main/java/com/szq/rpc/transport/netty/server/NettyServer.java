@@ -10,13 +10,17 @@ import com.szq.rpc.registry.ServiceRegistry;
 import com.szq.rpc.serializer.CommonSerializer;
 import com.szq.rpc.transport.AbstractRpcServer;
 import com.szq.rpc.transport.RpcServer;
+import com.szq.rpc.transport.netty.NettyTransport;
+import com.szq.rpc.transport.netty.TransportResources;
+import com.szq.rpc.transport.netty.WriteCoalescingHandler;
 import com.szq.rpc.codec.CommonDecoder;
 import com.szq.rpc.codec.CommonEncoder;
+import com.szq.rpc.codec.ProtocolConstants;
+import com.szq.rpc.codec.RpcFrameDecoder;
+import com.szq.rpc.compress.Compressor;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.timeout.IdleStateHandler;
@@ -24,6 +28,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -43,6 +49,20 @@ import java.util.concurrent.TimeUnit;
 public class NettyServer extends AbstractRpcServer {
 
     private final CommonSerializer serializer;
+    /**
+     * 合并flush的批大小和延迟上限(微秒)，批大小小于等于1时不启用
+     */
+    private int flushBatchSize = 1;
+    private long flushLatencyMicros;
+    /**
+     * 响应体的压缩算法(为null时不压缩)及压缩阈值(字节)
+     */
+    private Compressor compressor;
+    private int compressionThreshold = ProtocolConstants.DEFAULT_COMPRESSION_THRESHOLD;
+    /**
+     * 事件循环线程组与内存分配器，默认与同一进程中的客户端共享
+     */
+    private TransportResources transportResources = TransportResources.shared();
     public NettyServer(String host, int port) {
         this(host, port, DEFAULT_SERIALIZER);
     }
@@ -55,25 +75,77 @@ public class NettyServer extends AbstractRpcServer {
         //自动注册服务
         scanServices();
     }
+    /**
+     * @description 使用指定的注册中心创建服务端，不自动扫描服务，由调用方通过publishService()手动发布
+     * 适用于在进程内嵌入启动服务端的场景(如基准测试)，无需启动类上的@ServiceScan注解
+     * @param host, port, serializerCode, serviceRegistry
+     */
+    public NettyServer(String host, int port, Integer serializerCode, ServiceRegistry serviceRegistry) {
+        this.host = host;
+        this.port = port;
+        this.serviceRegistry = serviceRegistry;
+        serviceProvider = new ServiceProviderImpl();
+        serializer = CommonSerializer.getByCode(serializerCode);
+    }
+    /**
+     * @description 开启写合并：响应先写入缓冲区，读循环结束、攒够maxBatch个或等待latencyBudgetMicros后一次flush，需在start()前调用
+     * @param maxBatch 批大小，小于等于1表示关闭
+     * @param latencyBudgetMicros 单个响应因合并而增加的最大延迟(微秒)
+     * @return [void]
+     */
+    public void setWriteCoalescing(int maxBatch, long latencyBudgetMicros){
+        this.flushBatchSize = maxBatch;
+        this.flushLatencyMicros = latencyBudgetMicros;
+    }
+
+    /**
+     * @description 开启响应体压缩，只压缩不小于threshold字节的响应体，需在start()前调用。
+     * 旧版本客户端无法识别压缩标志，所有客户端升级后再开启
+     * @param compressorCode Compressor中的算法编号，Compressor.NONE表示关闭
+     * @param threshold 压缩阈值(字节)
+     * @return [void]
+     */
+    public void setCompression(int compressorCode, int threshold){
+        Compressor selected = Compressor.getByCode(compressorCode);
+        if (selected == null && compressorCode != Compressor.NONE){
+            throw new RpcException(RpcError.UNKNOWN_COMPRESSOR);
+        }
+        this.compressor = selected;
+        this.compressionThreshold = threshold;
+    }
+
+    /**
+     * @description 使用指定的传输资源，需在start()前调用；accept线程数、缓冲区等参数在其中配置
+     * @param transportResources
+     * @return [void]
+     */
+    public void setTransportResources(TransportResources transportResources){
+        this.transportResources = transportResources;
+    }
+
     @Override
     public void start() {
         //添加注销服务的钩子，服务端关闭时才会执行
         ShutdownHook.getShutdownHook().addClearAllHook();
+        //Linux上自动使用原生epoll，不可用时回退到NIO
+        NettyTransport transport = NettyTransport.current();
+        int acceptorThreads = transportResources.getAcceptorThreads();
+        boolean reusePort = acceptorThreads > 1 && transport.supportsReusePort();
+        int acceptors = reusePort ? acceptorThreads : 1;
         //用于处理客户端新连接的主“线程池”
-        EventLoopGroup bossGroup = new NioEventLoopGroup();
-        //用于连接后处理IO事件的从“线程池”
-        EventLoopGroup workerGroup = new NioEventLoopGroup();
+        EventLoopGroup bossGroup = transportResources.bossGroup();
+        //用于连接后处理IO事件的从“线程池”，与客户端共用
+        EventLoopGroup workerGroup = transportResources.ioGroup();
+        List<Channel> serverChannels = new ArrayList<>(acceptors);
         try{
             //初始化Netty服务端启动器，作为服务端入口
             ServerBootstrap serverBootstrap = new ServerBootstrap();
             //将主从“线程池”初始化到启动器中
             serverBootstrap.group(bossGroup, workerGroup)
             //设置服务端通道类型
-            .channel(NioServerSocketChannel.class)
+            .channel(transport.serverSocketChannelClass())
             //日志打印方式
             .handler(new LoggingHandler(LogLevel.INFO))
-            //配置ServerChannel参数，服务端接受连接的最大队列长度，如果队列已满，客户端连接将被拒绝。理解可参考：https://blog.csdn.net/fd2025/article/details/79740226
-            .option(ChannelOption.SO_BACKLOG,256)
             //启用该功能时，TCP会主动探测空闲连接的有效性。可以将此功能视为TCP的心跳机制，默认的心跳间隔是7200s即2小时。
             .option(ChannelOption.SO_KEEPALIVE, true)
             //配置Channel参数，nodelay没有延迟，true就代表禁用Nagle算法，减小传输延迟。理解可参考：https://blog.csdn.net/lclwjl/article/details/80154565
@@ -84,25 +156,41 @@ public class NettyServer extends AbstractRpcServer {
                 protected void initChannel(SocketChannel ch) throws Exception {
                     //初始化管道
                     ChannelPipeline pipeline = ch.pipeline();
+                    if (flushBatchSize > 1) {
+                        //写合并放在最前面，拦截所有出站处理器的flush
+                        pipeline.addLast(new WriteCoalescingHandler(flushBatchSize, flushLatencyMicros));
+                    }
                     //往管道中添加Handler，注意入站Handler与出站Handler都必须按实际执行顺序添加，比如先解码再Server处理，那Decoder()就要放在前面
                     //但入站和出站Handler之间则互不影响，这里我就是先添加的出站Handler再添加的入站
                     //设定IdleStateHandler心跳检测每30秒进行一次读检测，如果30秒内ChannelRead()方法未被调用则触发一次userEventTrigger()方法
                     pipeline.addLast(new IdleStateHandler(30,0,0, TimeUnit.SECONDS))
-                            .addLast(new CommonEncoder(serializer))
+                            .addLast(new CommonEncoder(serializer, compressor, compressionThreshold))
+                            //先按长度字段拆出完整帧，再解析帧头并反序列化
+                            .addLast(new RpcFrameDecoder())
                             .addLast(new CommonDecoder())
                             .addLast(new NettyServerHandler());
                 }
             });
+            //服务端接受连接的最大队列长度(SO_BACKLOG)、内存分配器、写缓冲区水位等，理解可参考：https://blog.csdn.net/fd2025/article/details/79740226
+            transportResources.applyServerOptions(serverBootstrap);
+            transport.applyServerOptions(serverBootstrap, reusePort);
             //绑定端口，启动Netty，sync()代表阻塞主Server线程，以执行Netty线程，如果不阻塞,Netty就直接被下面shutdown了
-            ChannelFuture future = serverBootstrap.bind(host, port).sync();
+            //开启SO_REUSEPORT时同一端口绑定多次，每个监听Channel注册到不同的boss线程上
+            for (int i = 0; i < acceptors; i++) {
+                serverChannels.add(serverBootstrap.bind(host, port).sync().channel());
+            }
             //等确定通道关闭了，关闭future回到主Server
-            future.channel().closeFuture().sync();
+            for (Channel serverChannel : serverChannels) {
+                serverChannel.closeFuture().sync();
+            }
         }catch (InterruptedException e){
             logger.error("启动服务器时有错误发生", e);
         }finally {
-            //优雅关闭Netty服务端且清理掉内存，shutdownGracefully()执行逻辑参考：https://www.icode9.com/content-4-797057.html
-            bossGroup.shutdownGracefully();
-            workerGroup.shutdownGracefully();
+            //线程组由TransportResources统一管理，这里只关闭监听Channel，不再接受新连接
+            //进程退出时由关闭钩子调用TransportResources.shutdown()优雅关闭，执行逻辑参考：https://www.icode9.com/content-4-797057.html
+            for (Channel serverChannel : serverChannels) {
+                serverChannel.close();
+            }
         }
     }
 
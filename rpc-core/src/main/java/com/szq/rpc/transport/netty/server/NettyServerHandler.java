@@ -1,8 +1,13 @@
 package com.szq.rpc.transport.netty.server;
 
+import com.szq.rpc.entity.RpcBatchRequest;
+import com.szq.rpc.entity.RpcBatchResponse;
 import com.szq.rpc.entity.RpcRequest;
+import com.szq.rpc.entity.RpcResponse;
+import com.szq.rpc.entity.RpcStreamCredit;
+import com.szq.rpc.enumertaion.ResponseCode;
+import com.szq.rpc.handler.RequestDispatcher;
 import com.szq.rpc.handler.RequestHandler;
-import com.szq.rpc.factory.ThreadPoolFactory;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
@@ -13,7 +18,16 @@ import io.netty.util.ReferenceCountUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * @author Ashur
@@ -23,10 +37,15 @@ public class NettyServerHandler extends SimpleChannelInboundHandler<RpcRequest>
     private static final Logger logger = LoggerFactory.getLogger(NettyServerHandler.class);
 
     private final RequestHandler requestHandler;
+    /**
+     * 本连接上进行中的流式调用，按请求号索引，用于接收客户端的额度和取消
+     */
+    private final Map<Long, ServerStream> streams = new ConcurrentHashMap<>();
 
     public NettyServerHandler() {
         requestHandler = new RequestHandler();
         //引入异步业务线程池，避免长时间的耗时业务阻塞netty本身的worker工作线程，耽误了同一个Selector中其他任务的执行
+        //具体使用哪个线程池由RequestDispatcher按服务决定
     }
 
     @Override
@@ -50,18 +69,154 @@ public class NettyServerHandler extends SimpleChannelInboundHandler<RpcRequest>
                 return;
             }
             logger.info("服务端接收到请求: {}", msg);
-            Object response = requestHandler.handle(msg);
-            if(ctx.channel().isActive() && ctx.channel().isWritable()) {
-                //注意这里的通道是workGroup中的，而NettyServer中创建的是bossGroup的，不要混淆
-                //当操作失败或者被取消了就关闭通道
-                ctx.writeAndFlush(response);
-            }else {
-                logger.error("通道不可写");
-            }
+            dispatch(msg, response -> {
+                if (!startStream(ctx, msg, response)) {
+                    writeResponse(ctx, response);
+                }
+            });
         } finally {
             ReferenceCountUtil.release(msg);
         }
     }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof RpcBatchRequest) {
+            handleBatch(ctx, (RpcBatchRequest) msg);
+            return;
+        }
+        if (msg instanceof RpcStreamCredit) {
+            RpcStreamCredit credit = (RpcStreamCredit) msg;
+            ServerStream stream = streams.get(credit.getRequestId());
+            //流已经结束时额度直接丢弃
+            if (stream != null) {
+                if (Boolean.TRUE.equals(credit.getCancel())) {
+                    stream.cancel();
+                } else {
+                    stream.addCredits(credit.getCredits());
+                }
+            }
+            return;
+        }
+        super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        //连接断开后结束所有流式调用，释放服务端的迭代器
+        for (ServerStream stream : streams.values()) {
+            stream.cancel();
+        }
+        super.channelInactive(ctx);
+    }
+
+    /**
+     * @description 服务方法声明返回Iterator时按流式调用处理：不写回单个响应，而是由ServerStream按额度分片发送，
+     * 迭代器在该服务的业务线程池上推进，INLINE模式的服务在I/O线程上推进。
+     * 是否流式按声明的返回值类型判断，与客户端一致：返回值类型为Object等的普通方法实际返回了Iterator时仍写回单个响应；
+     * 调用失败的响应照常写回，客户端以其结束流
+     * @param ctx, request, response
+     * @return [boolean] 是否为流式调用
+     */
+    private boolean startStream(ChannelHandlerContext ctx, RpcRequest request, Object response) {
+        if (!(response instanceof RpcResponse)) {
+            return false;
+        }
+        RpcResponse<?> rpcResponse = (RpcResponse<?>) response;
+        if (rpcResponse.getStatusCode() == null || rpcResponse.getStatusCode() != ResponseCode.SUCCESS.getCode()) {
+            return false;
+        }
+        Object data = rpcResponse.getData();
+        //声明返回Iterator的方法只可能返回Iterator或null，其他返回值无需再查方法表
+        if ((data != null && !(data instanceof Iterator)) || !requestHandler.isStreaming(request)) {
+            return false;
+        }
+        Iterator<?> iterator = data == null ? Collections.emptyIterator() : (Iterator<?>) data;
+        ExecutorService executor = RequestDispatcher.executorFor(request.getInterfaceName());
+        new ServerStream(ctx, request.getRequestId(), iterator, executor == null ? ctx.executor() : executor, streams).start();
+        return true;
+    }
+
+    /**
+     * @description 批量请求中的子请求各自分发、并行执行，全部完成后以一个批量响应写回
+     * @param ctx, batch
+     * @return [void]
+     */
+    private void handleBatch(ChannelHandlerContext ctx, RpcBatchRequest batch) {
+        List<RpcRequest> requests = batch.getRequests();
+        int size = requests.size();
+        logger.info("服务端接收到批量请求: {}，共{}个", batch.getRequestId(), size);
+        RpcResponse<?>[] responses = new RpcResponse<?>[size];
+        //最后一个完成的子请求负责写回，计数器的递减保证了之前写入数组的响应对其可见
+        AtomicInteger remaining = new AtomicInteger(size);
+        for (int i = 0; i < size; i++) {
+            int index = i;
+            RpcRequest request = requests.get(i);
+            dispatch(request, response -> {
+                //流式调用的分片单独发送，不放入批量响应
+                if (!startStream(ctx, request, response)) {
+                    responses[index] = (RpcResponse<?>) response;
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    List<RpcResponse<?>> list = new ArrayList<>(size);
+                    for (RpcResponse<?> item : responses) {
+                        if (item != null) {
+                            list.add(item);
+                        }
+                    }
+                    writeResponse(ctx, new RpcBatchResponse(batch.getRequestId(), list));
+                }
+            });
+        }
+    }
+
+    /**
+     * @description 按RequestDispatcher的配置在I/O线程或业务线程池上处理请求，响应交给callback
+     * 异步服务方法完成时才会回调，期间不占用I/O线程和业务线程
+     * @param msg, callback
+     * @return [void]
+     */
+    private void dispatch(RpcRequest msg, Consumer<Object> callback) {
+        ExecutorService executor = RequestDispatcher.executorFor(msg.getInterfaceName());
+        if (executor == null) {
+            requestHandler.handle(msg, callback);
+            return;
+        }
+        try {
+            executor.execute(() -> requestHandler.handle(msg, callback));
+        } catch (RejectedExecutionException e) {
+            //业务线程池已满，立即告知客户端服务端繁忙，不在I/O线程上排队等待
+            logger.warn("业务线程池已满，拒绝请求: {}", msg.getRequestId());
+            callback.accept(RpcResponse.fail(ResponseCode.SERVER_BUSY, msg.getRequestId()));
+        }
+    }
+
+    private void writeResponse(ChannelHandlerContext ctx, Object response) {
+        if(ctx.channel().isActive()) {
+            //注意这里的通道是workGroup中的，而NettyServer中创建的是bossGroup的，不要混淆
+            //通道不可写时响应仍然写入出站缓冲区，由channelWritabilityChanged暂停读取来限制缓冲区增长
+            ctx.writeAndFlush(response);
+        }else {
+            logger.error("通道已关闭，丢弃响应");
+        }
+    }
+
+    /**
+     * @description 出站缓冲区超过高水位时暂停读取新请求，降到低水位以下后恢复，客户端消费过慢时不会无限堆积响应
+     * 该事件总是在Channel的EventLoop线程上触发，与水位的变化顺序一致
+     * @param ctx
+     * @return [void]
+     */
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        boolean writable = ctx.channel().isWritable();
+        if (!writable) {
+            logger.warn("通道不可写，暂停读取: {}", ctx.channel().remoteAddress());
+        }
+        ctx.channel().config().setAutoRead(writable);
+        super.channelWritabilityChanged(ctx);
+    }
+
         @Override
         public void exceptionCaught (ChannelHandlerContext ctx, Throwable cause) throws Exception {
             logger.error("处理过程调用时有错误发生：");
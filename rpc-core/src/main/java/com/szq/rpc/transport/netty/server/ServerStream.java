@@ -0,0 +1,135 @@
+package com.szq.rpc.transport.netty.server;
+
+import com.szq.rpc.codec.ProtocolConstants;
+import com.szq.rpc.entity.RpcStreamChunk;
+import com.szq.rpc.enumertaion.ResponseCode;
+import io.netty.channel.ChannelHandlerContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Ashur
+ * @description 服务端的一次流式调用：按客户端授予的额度从服务方法返回的迭代器中取元素，分片写回客户端
+ * 额度用完时暂停，收到新额度后在业务线程上继续，迭代器的hasNext()/next()可以阻塞(如数据库游标)而不占用I/O线程；
+ * 同一时刻只有一个线程在取元素，由pumping标志保证
+ */
+class ServerStream {
+    private static final Logger logger = LoggerFactory.getLogger(ServerStream.class);
+
+    /**
+     * 单个分片最多包含的元素数，额度较大时拆成多个分片，客户端可以边收边消费
+     */
+    private static final int MAX_CHUNK_ITEMS = 16;
+
+    private final ChannelHandlerContext ctx;
+    private final long requestId;
+    private final Iterator<?> iterator;
+    private final Executor executor;
+    private final Map<Long, ServerStream> streams;
+    private final AtomicInteger credits = new AtomicInteger(ProtocolConstants.STREAM_WINDOW);
+    private final AtomicBoolean pumping = new AtomicBoolean();
+    private volatile boolean cancelled;
+
+    ServerStream(ChannelHandlerContext ctx, long requestId, Iterator<?> iterator, Executor executor, Map<Long, ServerStream> streams) {
+        this.ctx = ctx;
+        this.requestId = requestId;
+        this.iterator = iterator;
+        this.executor = executor;
+        this.streams = streams;
+    }
+
+    void start() {
+        streams.put(requestId, this);
+        schedule();
+    }
+
+    void addCredits(int n) {
+        credits.addAndGet(n);
+        schedule();
+    }
+
+    /**
+     * @description 客户端取消或连接断开，正在进行的取元素会在下一次检查时结束
+     * @return [void]
+     */
+    void cancel() {
+        cancelled = true;
+        schedule();
+    }
+
+    private void schedule() {
+        if (!pumping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::pump);
+        } catch (RejectedExecutionException e) {
+            logger.warn("业务线程池已满，结束流式调用: {}", requestId);
+            finish(ResponseCode.SERVER_BUSY);
+        }
+    }
+
+    private void pump() {
+        try {
+            while (true) {
+                if (cancelled) {
+                    finish(null);
+                    return;
+                }
+                int available = credits.get();
+                if (available <= 0) {
+                    pumping.set(false);
+                    //释放标志后再检查一次，避免与addCredits()交错时丢失唤醒
+                    if ((credits.get() > 0 || cancelled) && pumping.compareAndSet(false, true)) {
+                        continue;
+                    }
+                    return;
+                }
+                int limit = Math.min(available, MAX_CHUNK_ITEMS);
+                List<Object> items = new ArrayList<>(limit);
+                while (items.size() < limit && iterator.hasNext()) {
+                    items.add(iterator.next());
+                }
+                credits.addAndGet(-items.size());
+                boolean end = !iterator.hasNext();
+                ctx.writeAndFlush(new RpcStreamChunk(requestId, items, end, end ? ResponseCode.SUCCESS.getCode() : null, null));
+                if (end) {
+                    finish(null);
+                    return;
+                }
+            }
+        } catch (Throwable e) {
+            logger.error("流式调用时有错误发生: {}", requestId, e);
+            finish(ResponseCode.FAIL);
+        }
+    }
+
+    /**
+     * @description 结束本次流式调用，code不为null时向客户端发送带状态码的结束分片；
+     * 迭代器同时实现了AutoCloseable时(如包装了数据库游标)将其关闭
+     * @param code
+     * @return [void]
+     */
+    private void finish(ResponseCode code) {
+        streams.remove(requestId);
+        if (code != null && ctx.channel().isActive()) {
+            ctx.writeAndFlush(new RpcStreamChunk(requestId, new ArrayList<>(0), true, code.getCode(), code.getMessage()));
+        }
+        if (iterator instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) iterator).close();
+            } catch (Exception e) {
+                logger.warn("关闭流式调用的资源时有错误发生: {}", requestId, e);
+            }
+        }
+    }
+}
@@ -52,6 +52,11 @@ public class SocketClient implements RpcClient {
         serializer = CommonSerializer.getByCode(serializerCode);
     }
 
+    @Override
+    public CommonSerializer getSerializer() {
+        return serializer;
+    }
+
     @Override
     public Object sendRequest(RpcRequest rpcRequest) {
         if (serializer == null) {
@@ -59,7 +64,7 @@ public class SocketClient implements RpcClient {
             throw new RpcException(RpcError.SERIALIZER_NOT_FOUND);
         }
         //从Nacos获取提供对应服务的服务端地址
-        InetSocketAddress inetSocketAddress = serviceDiscovery.lookupService(rpcRequest.getInterfaceName());
+        InetSocketAddress inetSocketAddress = serviceDiscovery.lookupService(rpcRequest);
         /**
          * socket套接字实现TCP网络传输
          * try()中一般放对资源的申请，若{}出现异常，()资源会自动关闭
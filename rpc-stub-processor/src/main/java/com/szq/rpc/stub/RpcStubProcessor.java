@@ -0,0 +1,324 @@
+package com.szq.rpc.stub;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @author Ashur
+ * @description 处理@GenerateStubs，为每个服务接口生成"接口名_RpcStub"存根类
+ * 存根类实现服务接口，每个方法持有一个静态的MethodDescriptor(接口名、方法名、编译期算好的方法号、参数类型)，
+ * 调用时直接交给RpcClientProxy.invoke(MethodDescriptor, Object[])，不经过JDK动态代理
+ */
+@SupportedAnnotationTypes(RpcStubProcessor.ANNOTATION)
+public class RpcStubProcessor extends AbstractProcessor {
+
+    static final String ANNOTATION = "com.szq.rpc.annotation.GenerateStubs";
+    /**
+     * 与RpcClientProxy.STUB_SUFFIX保持一致
+     */
+    private static final String STUB_SUFFIX = "_RpcStub";
+    private static final String PROXY = "com.szq.rpc.transport.RpcClientProxy";
+    private static final String DESCRIPTOR = "com.szq.rpc.transport.MethodDescriptor";
+    private static final String ASYNC_MIRROR = "com.szq.rpc.annotation.AsyncMirror";
+    private static final String IDEMPOTENT = "com.szq.rpc.annotation.Idempotent";
+    private static final String POLICY = "com.szq.rpc.transport.InvocationPolicy";
+
+    /**
+     * 同一次编译中已生成的存根，避免多处注解同一接口时重复生成
+     */
+    private final Set<String> generated = new HashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element annotated : roundEnv.getElementsAnnotatedWith(annotation)) {
+                for (TypeElement service : servicesOf(annotated)) {
+                    if (service.getKind() != ElementKind.INTERFACE){
+                        error(annotated, service + " 不是接口，无法生成存根");
+                        continue;
+                    }
+                    if (generated.add(service.getQualifiedName().toString())){
+                        generate(service, annotated);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @description 读取注解中的Class<?>[]，编译期不能直接取Class对象，只能通过AnnotationMirror
+     * @param annotated
+     * @return [java.util.List<javax.lang.model.element.TypeElement>]
+     */
+    private List<TypeElement> servicesOf(Element annotated){
+        List<TypeElement> services = new ArrayList<>();
+        for (AnnotationMirror mirror : annotated.getAnnotationMirrors()) {
+            if (!ANNOTATION.equals(((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString())){
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+                if (!"value".contentEquals(entry.getKey().getSimpleName())){
+                    continue;
+                }
+                Object value = entry.getValue().getValue();
+                List<?> values = value instanceof List ? (List<?>) value : Collections.singletonList(entry.getValue());
+                for (Object v : values) {
+                    TypeMirror type = (TypeMirror) ((AnnotationValue) v).getValue();
+                    services.add((TypeElement) processingEnv.getTypeUtils().asElement(type));
+                }
+            }
+        }
+        return services;
+    }
+
+    private void generate(TypeElement service, Element origin){
+        String packageName = ((PackageElement) processingEnv.getElementUtils().getPackageOf(service)).getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(service).toString();
+        String stubSimpleName = binaryName.substring(packageName.isEmpty() ? 0 : packageName.length() + 1) + STUB_SUFFIX;
+        String stubName = packageName.isEmpty() ? stubSimpleName : packageName + "." + stubSimpleName;
+
+        DeclaredType serviceType = (DeclaredType) service.asType();
+        StringBuilder fields = new StringBuilder();
+        StringBuilder methods = new StringBuilder();
+        int index = 0;
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(service))) {
+            //只为需要远程调用的抽象方法生成实现，default和static方法保持接口自身的实现
+            if (!method.getModifiers().contains(Modifier.ABSTRACT)
+                    || method.getEnclosingElement().getKind() != ElementKind.INTERFACE){
+                continue;
+            }
+            ExecutableType methodType = (ExecutableType) processingEnv.getTypeUtils().asMemberOf(serviceType, method);
+            appendMethod(fields, methods, index++, (TypeElement) method.getEnclosingElement(), method, methodType);
+        }
+
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()){
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("/**\n * 由RpcStubProcessor根据@GenerateStubs生成的")
+                .append(service.getSimpleName()).append("客户端存根，请勿手动修改\n */\n")
+                .append("@SuppressWarnings(\"unchecked\")\n")
+                .append("public final class ").append(stubSimpleName).append(typeParameters(service.getTypeParameters()).trim())
+                .append(" implements ").append(serviceType).append(" {\n\n")
+                .append(fields).append('\n')
+                .append("    private final ").append(PROXY).append(" proxy;\n\n")
+                .append("    public ").append(stubSimpleName).append("(").append(PROXY).append(" proxy) {\n")
+                .append("        this.proxy = proxy;\n")
+                .append("    }\n")
+                .append(methods)
+                .append("}\n");
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(stubName, service, origin);
+            try (Writer writer = file.openWriter()) {
+                writer.write(source.toString());
+            }
+        } catch (IOException e) {
+            error(origin, "生成存根 " + stubName + " 失败: " + e.getMessage());
+        }
+    }
+
+    private void appendMethod(StringBuilder fields, StringBuilder methods, int index, TypeElement owner,
+                              ExecutableElement method, ExecutableType methodType){
+        String descriptor = "M" + index;
+        List<? extends TypeMirror> paramTypes = methodType.getParameterTypes();
+        //方法号规则与MethodIdUtil一致：签名"name(参数类型的Class.getName(),...)"的hashCode，0换成1
+        StringBuilder signature = new StringBuilder(method.getSimpleName()).append('(');
+        StringBuilder classLiterals = new StringBuilder();
+        for (int i = 0; i < paramTypes.size(); i++) {
+            //方法号和参数类型按声明处擦除，与运行时接口方法的Method.getParameterTypes()一致(例如继承自泛型父接口的方法)
+            TypeMirror erased = processingEnv.getTypeUtils().erasure(method.getParameters().get(i).asType());
+            if (i > 0){
+                signature.append(',');
+                classLiterals.append(", ");
+            }
+            signature.append(className(erased));
+            classLiterals.append(erased).append(".class");
+        }
+        int methodId = signature.append(')').toString().hashCode();
+        if (methodId == 0){
+            methodId = 1;
+        }
+        //返回CompletableFuture/CompletionStage的方法为异步调用，与MethodDescriptor.isAsync()一致
+        String erasedReturn = processingEnv.getTypeUtils().erasure(method.getReturnType()).toString();
+        boolean async = "java.util.concurrent.CompletableFuture".equals(erasedReturn)
+                || "java.util.concurrent.CompletionStage".equals(erasedReturn);
+        //返回Iterator的方法为流式调用，与MethodDescriptor.isStreaming()一致
+        boolean streaming = "java.util.Iterator".equals(erasedReturn);
+        fields.append("    private static final ").append(DESCRIPTOR).append(' ').append(descriptor)
+                .append(" = new ").append(DESCRIPTOR).append("(\"")
+                .append(interfaceName(owner)).append("\", \"")
+                .append(method.getSimpleName()).append("\", ").append(methodId)
+                .append(", new Class<?>[]{").append(classLiterals).append("}, ").append(async).append(", ").append(streaming)
+                .append(", ").append(policy(method)).append(");\n");
+
+        methods.append("\n    @Override\n    public ").append(typeParameters(method.getTypeParameters()));
+        TypeMirror returnType = methodType.getReturnType();
+        methods.append(returnType).append(' ').append(method.getSimpleName()).append('(');
+        StringBuilder args = new StringBuilder();
+        for (int i = 0; i < paramTypes.size(); i++) {
+            if (i > 0){
+                methods.append(", ");
+                args.append(", ");
+            }
+            methods.append(paramTypes.get(i)).append(" arg").append(i);
+            args.append("arg").append(i);
+        }
+        methods.append(')');
+        List<? extends TypeMirror> thrown = methodType.getThrownTypes();
+        for (int i = 0; i < thrown.size(); i++) {
+            methods.append(i == 0 ? " throws " : ", ").append(thrown.get(i));
+        }
+        String call = "proxy.invoke(" + descriptor + ", " + (paramTypes.isEmpty() ? "null" : "new Object[]{" + args + "}") + ")";
+        methods.append(" {\n        ");
+        if (returnType.getKind() == TypeKind.VOID){
+            methods.append(call).append(";\n");
+        }else if (returnType.getKind().isPrimitive()){
+            methods.append("return (")
+                    .append(processingEnv.getTypeUtils().boxedClass((PrimitiveType) returnType).getQualifiedName())
+                    .append(") ").append(call).append(";\n");
+        }else {
+            methods.append("return (").append(returnType).append(") ").append(call).append(";\n");
+        }
+        methods.append("    }\n");
+    }
+
+    /**
+     * @description 请求中的接口名：异步镜像接口取@AsyncMirror指定的服务接口，否则为方法所在接口
+     * @param owner
+     * @return [java.lang.String]
+     */
+    private String interfaceName(TypeElement owner){
+        for (AnnotationMirror mirror : owner.getAnnotationMirrors()) {
+            if (!ASYNC_MIRROR.equals(((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString())){
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+                if ("value".contentEquals(entry.getKey().getSimpleName())){
+                    return className((TypeMirror) entry.getValue().getValue());
+                }
+            }
+        }
+        return processingEnv.getElementUtils().getBinaryName(owner).toString();
+    }
+
+    /**
+     * @description 方法上@Idempotent对应的InvocationPolicy构造表达式，取值包括注解的默认值，与InvocationPolicy.of(Method)一致
+     * @param method
+     * @return [java.lang.String] 方法不是幂等的时为"null"
+     */
+    private String policy(ExecutableElement method){
+        for (AnnotationMirror mirror : method.getAnnotationMirrors()) {
+            if (!IDEMPOTENT.equals(((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString())){
+                continue;
+            }
+            Object retries = null;
+            Object hedge = null;
+            Object hedgeDelayMillis = null;
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                    : processingEnv.getElementUtils().getElementValuesWithDefaults(mirror).entrySet()) {
+                String name = entry.getKey().getSimpleName().toString();
+                if ("retries".equals(name)){
+                    retries = entry.getValue().getValue();
+                }else if ("hedge".equals(name)){
+                    hedge = entry.getValue().getValue();
+                }else if ("hedgeDelayMillis".equals(name)){
+                    hedgeDelayMillis = entry.getValue().getValue();
+                }
+            }
+            return "new " + POLICY + "(" + retries + ", " + hedge + ", " + hedgeDelayMillis + "L)";
+        }
+        return "null";
+    }
+
+    private static String typeParameters(List<? extends TypeParameterElement> typeParameters){
+        if (typeParameters.isEmpty()){
+            return "";
+        }
+        StringBuilder sb = new StringBuilder("<");
+        for (int i = 0; i < typeParameters.size(); i++) {
+            TypeParameterElement parameter = typeParameters.get(i);
+            if (i > 0){
+                sb.append(", ");
+            }
+            sb.append(parameter.getSimpleName());
+            List<? extends TypeMirror> bounds = parameter.getBounds();
+            boolean first = true;
+            for (TypeMirror bound : bounds) {
+                if ("java.lang.Object".equals(bound.toString())){
+                    continue;
+                }
+                sb.append(first ? " extends " : " & ").append(bound);
+                first = false;
+            }
+        }
+        return sb.append("> ").toString();
+    }
+
+    /**
+     * @description 计算擦除后的类型在运行时Class.getName()的结果
+     * @param type
+     * @return [java.lang.String]
+     */
+    private String className(TypeMirror type){
+        if (type.getKind().isPrimitive()){
+            return type.getKind().name().toLowerCase();
+        }
+        if (type.getKind() == TypeKind.ARRAY){
+            return "[" + arrayComponentName(((ArrayType) type).getComponentType());
+        }
+        return processingEnv.getElementUtils().getBinaryName((TypeElement) processingEnv.getTypeUtils().asElement(type)).toString();
+    }
+
+    private String arrayComponentName(TypeMirror component){
+        switch (component.getKind()){
+            case BOOLEAN: return "Z";
+            case BYTE: return "B";
+            case CHAR: return "C";
+            case SHORT: return "S";
+            case INT: return "I";
+            case LONG: return "J";
+            case FLOAT: return "F";
+            case DOUBLE: return "D";
+            case ARRAY: return "[" + arrayComponentName(((ArrayType) component).getComponentType());
+            default: return "L" + className(component) + ";";
+        }
+    }
+
+    private void error(Element element, String message){
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}